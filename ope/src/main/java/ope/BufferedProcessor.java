@@ -0,0 +1,33 @@
+package ope;
+
+import java.io.ByteArrayOutputStream;
+import java.util.function.UnaryOperator;
+
+/**
+ * Fallback incremental processor for keys that can only process whole values.
+ * Buffers all input and processes it at once when finished.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+final class BufferedProcessor implements Encryptor, Decryptor {
+	
+	private static final byte[] EMPTY = new byte[0];
+	
+	private final UnaryOperator<byte[]> operation;
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	
+	BufferedProcessor(UnaryOperator<byte[]> operation) {
+		this.operation = operation;
+	}
+
+	public byte[] update(byte[] input, int offset, int length) throws OpeException {
+		buffer.write(input, offset, length);
+		return EMPTY;
+	}
+
+	public byte[] finish() throws OpeException {
+		byte[] input = buffer.toByteArray();
+		buffer.reset();
+		return operation.apply(input);
+	}
+}
@@ -1,12 +1,57 @@
 package ope;
 
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import ope.util.KeyDerivation;
+
 /**
  * General interface for OPE ciphers.
  * Provides methods for generating keys and decoding keys from binary format.
  * 
+ * Bulk generation methods produce keys in parallel, in binary format, which
+ * implementations may generate without constructing full key objects.
+ * 
+ * Derived keys are computed deterministically from a master secret and a
+ * context, so they can be recreated on demand instead of being stored.
+ * Derivation depends on the cipher configuration as well, so the same
+ * configuration must be used every time a key is derived.
+ * 
  * @author Ayman Madkour <info@aymanmadkour.com>
  */
 public interface Cipher {
 	public Key generateKey() throws OpeException;
 	public Key decodeKey(byte[] bytes) throws OpeException;
+
+	/**
+	 * Derives a key from the output of kdf, for ciphers that support key
+	 * derivation.
+	 */
+	public default Key deriveKey(KeyDerivation kdf) throws OpeException {
+		throw new OpeException("Key derivation is not supported by " + getClass().getSimpleName() + ".");
+	}
+
+	public default Key deriveKey(byte[] masterSecret, String... context) throws OpeException {
+		return deriveKey(new KeyDerivation(masterSecret, context));
+	}
+
+	public default byte[] generateEncodedKey() throws OpeException {
+		return generateKey().encodeKey();
+	}
+
+	public default byte[][] generateKeys(int count) throws OpeException {
+		if (count < 0) { throw new IllegalArgumentException("Key count must not be negative: " + count + "."); }
+		byte[][] keys = new byte[count][];
+		IntStream.range(0, count).parallel().forEach(i -> keys[i] = generateEncodedKey());
+		return keys;
+	}
+
+	/**
+	 * Generates count keys in parallel and passes each encoded key to sink.
+	 * The sink is called concurrently from multiple threads.
+	 */
+	public default void generateKeys(int count, Consumer<byte[]> sink) throws OpeException {
+		if (count < 0) { throw new IllegalArgumentException("Key count must not be negative: " + count + "."); }
+		IntStream.range(0, count).parallel().forEach(i -> sink.accept(generateEncodedKey()));
+	}
 }
@@ -0,0 +1,378 @@
+package ope;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+
+import ope.util.Encoder;
+
+/**
+ * Stores ciphertexts back to back in large off-heap slabs, instead of one
+ * byte array per ciphertext. Ciphertexts are addressed by ordinal, in the
+ * order in which they were appended, through an index of primitive arrays
+ * (8-byte offset and 4-byte length per ciphertext).
+ * 
+ * Slabs have a fixed, power-of-two size and are never copied: when a
+ * ciphertext does not fit in the current slab, a new one is allocated.
+ * Slabs are obtained from an allocator, which returns direct buffers by
+ * default but may also hand out pooled or memory-mapped buffers. Such
+ * buffers are handed back to an optional release callback when the arena
+ * drops them, in clear() and close().
+ * 
+ * Keys can encrypt directly into an arena using Key.encrypt(byte[],
+ * CiphertextArena) and its typed variants.
+ * 
+ * Appends must not run concurrently with each other or with reads, while
+ * reads may run concurrently with each other.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public class CiphertextArena implements AutoCloseable {
+	
+	private static final int DEFAULT_SLAB_SIZE = 16 * 1024 * 1024;
+	private static final int DEFAULT_CAPACITY = 1024;
+	private static final int DECRYPT_BATCH_SIZE = 1024;
+	
+	private final IntFunction<ByteBuffer> allocator;
+	private final Consumer<ByteBuffer> release;
+	private final int slabSize;
+	private final int slabShift;
+	
+	// Buffers returned by the allocator, and big-endian views of them
+	private final List<ByteBuffer> allocated = new ArrayList<>();
+	private final List<ByteBuffer> slabs = new ArrayList<>();
+	
+	// Reused for writing into the current slab
+	private ByteBuffer writer;
+	
+	private long[] offsets = new long[DEFAULT_CAPACITY];
+	private int[] lengths = new int[DEFAULT_CAPACITY];
+	private int size;
+	
+	// Current slab, and next free position in it
+	private int currentSlab;
+	private int slabPosition;
+	
+	public CiphertextArena() {
+		this(DEFAULT_SLAB_SIZE);
+	}
+	
+	public CiphertextArena(int slabSize) throws OpeException {
+		this(slabSize, ByteBuffer::allocateDirect);
+	}
+	
+	/**
+	 * Creates an arena whose slabs are obtained from allocator, which must
+	 * return buffers of the requested size.
+	 */
+	public CiphertextArena(int slabSize, IntFunction<ByteBuffer> allocator) throws OpeException {
+		this(slabSize, allocator, null);
+	}
+	
+	/**
+	 * Creates an arena whose slabs are obtained from allocator, and passed to
+	 * release (if not null) once the arena no longer uses them.
+	 */
+	public CiphertextArena(int slabSize, IntFunction<ByteBuffer> allocator, Consumer<ByteBuffer> release) throws OpeException {
+		if (slabSize <= 0 || Integer.bitCount(slabSize) != 1) {
+			throw new OpeException("Slab size must be a power of two.");
+		}
+		
+		this.allocator = allocator;
+		this.release = release;
+		this.slabSize = slabSize;
+		this.slabShift = Integer.numberOfTrailingZeros(slabSize);
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns the number of off-heap bytes used by slabs.
+	 */
+	public long getMemoryUsage() {
+		return (long) slabs.size() * slabSize;
+	}
+	
+	/**
+	 * Appends a ciphertext, returning its ordinal.
+	 */
+	public int append(byte[] ciphertext) throws OpeException {
+		return append(ciphertext, 0, ciphertext.length);
+	}
+	
+	public int append(byte[] ciphertext, int offset, int length) throws OpeException {
+		long start = reserve(length);
+		writer.put(ciphertext, offset, length);
+		return add(start, length);
+	}
+	
+	/**
+	 * Encrypts plaintext directly into the arena, returning the ordinal of
+	 * its ciphertext.
+	 */
+	public int append(Key key, byte[] plaintext) throws OpeException {
+		int length = key.getCiphertextLength(plaintext.length);
+		long start = reserve(length);
+		
+		try {
+			key.encrypt(plaintext, writer);
+			if (writer.hasRemaining()) { throw new OpeException("Ciphertext is shorter than expected."); }
+			
+		} catch (RuntimeException e) {
+			// Release reserved bytes
+			slabPosition = position(start);
+			throw e;
+		}
+		
+		return add(start, length);
+	}
+	
+	public int getLength(int ordinal) {
+		checkOrdinal(ordinal);
+		return lengths[ordinal];
+	}
+	
+	/**
+	 * Returns a copy of a ciphertext.
+	 */
+	public byte[] get(int ordinal) {
+		byte[] ciphertext = new byte[getLength(ordinal)];
+		ByteBuffer slab = slab(offsets[ordinal]).duplicate();
+		slab.position(position(offsets[ordinal]));
+		slab.get(ciphertext);
+		return ciphertext;
+	}
+	
+	/**
+	 * Returns a read-only view of a ciphertext, without copying it.
+	 */
+	public ByteBuffer slice(int ordinal) {
+		int length = getLength(ordinal);
+		int position = position(offsets[ordinal]);
+		
+		ByteBuffer slab = slab(offsets[ordinal]).asReadOnlyBuffer();
+		slab.limit(position + length);
+		slab.position(position);
+		return slab.slice();
+	}
+	
+	/**
+	 * Compares two ciphertexts in place, in the same order as
+	 * CiphertextComparator.
+	 */
+	public int compare(int ordinal1, int ordinal2) {
+		int length1 = getLength(ordinal1);
+		int length2 = getLength(ordinal2);
+		ByteBuffer slab1 = slab(offsets[ordinal1]);
+		ByteBuffer slab2 = slab(offsets[ordinal2]);
+		int position1 = position(offsets[ordinal1]);
+		int position2 = position(offsets[ordinal2]);
+		
+		// Compare 8 bytes at a time, then byte by byte
+		int length = Math.min(length1, length2);
+		int i = 0;
+		for (; i + 8 <= length; i += 8) {
+			long l1 = slab1.getLong(position1 + i);
+			long l2 = slab2.getLong(position2 + i);
+			if (l1 != l2) { return Long.compareUnsigned(l1, l2) < 0 ? -1 : 1; }
+		}
+		for (; i < length; i++) {
+			int b1 = Byte.toUnsignedInt(slab1.get(position1 + i));
+			int b2 = Byte.toUnsignedInt(slab2.get(position2 + i));
+			if (b1 != b2) { return (b1 < b2) ? -1 : 1; }
+		}
+		
+		return Integer.compare(length1, length2);
+	}
+	
+	/**
+	 * Compares a stored ciphertext to another ciphertext, in the same order as
+	 * CiphertextComparator.
+	 */
+	public int compare(int ordinal, byte[] ciphertext) {
+		int length1 = getLength(ordinal);
+		ByteBuffer slab = slab(offsets[ordinal]);
+		int position = position(offsets[ordinal]);
+		
+		// Compare 8 bytes at a time, then byte by byte
+		int length = Math.min(length1, ciphertext.length);
+		int i = 0;
+		for (; i + 8 <= length; i += 8) {
+			long l1 = slab.getLong(position + i);
+			long l2 = getLong(ciphertext, i);
+			if (l1 != l2) { return Long.compareUnsigned(l1, l2) < 0 ? -1 : 1; }
+		}
+		for (; i < length; i++) {
+			int b1 = Byte.toUnsignedInt(slab.get(position + i));
+			int b2 = Byte.toUnsignedInt(ciphertext[i]);
+			if (b1 != b2) { return (b1 < b2) ? -1 : 1; }
+		}
+		
+		return Integer.compare(length1, ciphertext.length);
+	}
+	
+	public byte[] decrypt(Key key, int ordinal) {
+		return key.decrypt(get(ordinal));
+	}
+	
+	public int[] decryptInts(Key key) {
+		int[] values = new int[size];
+		decryptInts(key, 0, values);
+		return values;
+	}
+	
+	/**
+	 * Decrypts values.length ciphertexts, starting at ordinal from.
+	 */
+	public void decryptInts(Key key, int from, int[] values) {
+		decrypt(key, from, values.length, (plaintext, i) -> values[i] = Encoder.decodeInt(plaintext));
+	}
+	
+	public long[] decryptLongs(Key key) {
+		long[] values = new long[size];
+		decryptLongs(key, 0, values);
+		return values;
+	}
+	
+	public void decryptLongs(Key key, int from, long[] values) {
+		decrypt(key, from, values.length, (plaintext, i) -> values[i] = Encoder.decodeLong(plaintext));
+	}
+	
+	public float[] decryptFloats(Key key) {
+		float[] values = new float[size];
+		decryptFloats(key, 0, values);
+		return values;
+	}
+	
+	public void decryptFloats(Key key, int from, float[] values) {
+		decrypt(key, from, values.length, (plaintext, i) -> values[i] = Encoder.decodeFloat(plaintext));
+	}
+	
+	public double[] decryptDoubles(Key key) {
+		double[] values = new double[size];
+		decryptDoubles(key, 0, values);
+		return values;
+	}
+	
+	public void decryptDoubles(Key key, int from, double[] values) {
+		decrypt(key, from, values.length, (plaintext, i) -> values[i] = Encoder.decodeDouble(plaintext));
+	}
+	
+	/**
+	 * Removes all ciphertexts, keeping the first slab for reuse and releasing
+	 * the others.
+	 */
+	public void clear() {
+		releaseSlabs(1);
+		writer = slabs.isEmpty() ? null : slabs.get(0).duplicate();
+		size = 0;
+		currentSlab = 0;
+		slabPosition = 0;
+	}
+	
+	/**
+	 * Removes all ciphertexts and releases all slabs. The arena may still be
+	 * used afterwards, allocating new slabs as needed.
+	 */
+	public void close() {
+		clear();
+		releaseSlabs(0);
+		writer = null;
+	}
+	
+	private void releaseSlabs(int keep) {
+		while (slabs.size() > keep) {
+			slabs.remove(slabs.size() - 1);
+			ByteBuffer buffer = allocated.remove(allocated.size() - 1);
+			if (release != null) { release.accept(buffer); }
+		}
+	}
+	
+	private void decrypt(Key key, int from, int count, ObjIntConsumer<byte[]> consumer) {
+		if (from < 0 || count < 0 || from + count > size) {
+			throw new OpeException("Invalid ordinal range " + from + " to " + (from + count) + ".");
+		}
+		
+		// Decrypt in batches, so keys can use their batch decryption, reading
+		// ciphertexts in place from slab slices
+		ByteBuffer[] batch = new ByteBuffer[Math.min(count, DECRYPT_BATCH_SIZE)];
+		for (int done = 0; done < count; done += batch.length) {
+			int batchSize = Math.min(batch.length, count - done);
+			if (batchSize < batch.length) { batch = Arrays.copyOf(batch, batchSize); }
+			
+			for (int i = 0; i < batchSize; i++) { batch[i] = slice(from + done + i); }
+			
+			byte[][] plaintexts = key.decrypt(batch);
+			for (int i = 0; i < batchSize; i++) { consumer.accept(plaintexts[i], done + i); }
+		}
+	}
+	
+	/**
+	 * Positions the writer at the start of length free bytes, allocating a new
+	 * slab if needed, and returns their offset.
+	 */
+	private long reserve(int length) throws OpeException {
+		if (length > slabSize) {
+			throw new OpeException("Ciphertext of " + length + " bytes does not fit in a slab of " + slabSize + " bytes.");
+		}
+		
+		if (slabs.isEmpty() || slabPosition + length > slabSize) {
+			if (!slabs.isEmpty()) { currentSlab++; }
+			if (currentSlab == slabs.size()) {
+				// Big-endian words compare like unsigned byte strings, whatever the allocator's order
+				ByteBuffer buffer = allocator.apply(slabSize);
+				allocated.add(buffer);
+				slabs.add(buffer.duplicate().order(ByteOrder.BIG_ENDIAN));
+			}
+			
+			slabPosition = 0;
+			writer = slabs.get(currentSlab).duplicate();
+		}
+		
+		writer.clear();
+		writer.position(slabPosition);
+		writer.limit(slabPosition + length);
+		
+		long start = ((long) currentSlab << slabShift) | slabPosition;
+		slabPosition += length;
+		return start;
+	}
+	
+	private int add(long offset, int length) {
+		if (size == offsets.length) {
+			offsets = Arrays.copyOf(offsets, size * 2);
+			lengths = Arrays.copyOf(lengths, size * 2);
+		}
+		
+		offsets[size] = offset;
+		lengths[size] = length;
+		return size++;
+	}
+	
+	private static long getLong(byte[] bytes, int index) {
+		long value = 0;
+		for (int i = 0; i < 8; i++) { value = (value << 8) | Byte.toUnsignedLong(bytes[index + i]); }
+		return value;
+	}
+	
+	private ByteBuffer slab(long offset) {
+		return slabs.get((int) (offset >>> slabShift));
+	}
+	
+	private int position(long offset) {
+		return (int) (offset & (slabSize - 1));
+	}
+	
+	private void checkOrdinal(int ordinal) throws OpeException {
+		if (ordinal < 0 || ordinal >= size) {
+			throw new OpeException("Invalid ordinal " + ordinal + ".");
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package ope;
+
+import ope.util.CiphertextComparator;
+
+/**
+ * A half-open range of ciphertexts, in the order defined by
+ * CiphertextComparator, from lower (inclusive) to upper (exclusive).
+ * A null upper bound means that the range has no upper limit.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public class CiphertextRange {
+	
+	private final byte[] lower;
+	private final byte[] upper;
+	
+	public CiphertextRange(byte[] lower, byte[] upper) {
+		this.lower = lower;
+		this.upper = upper;
+	}
+	
+	public byte[] getLower() {
+		return lower;
+	}
+	
+	public byte[] getUpper() {
+		return upper;
+	}
+	
+	public boolean contains(byte[] ciphertext) {
+		return contains(ciphertext, 0, ciphertext.length);
+	}
+	
+	public boolean contains(byte[] ciphertext, int offset, int length) {
+		return CiphertextComparator.compare(ciphertext, offset, length, lower, 0, lower.length) >= 0
+				&& (upper == null || CiphertextComparator.compare(ciphertext, offset, length, upper, 0, upper.length) < 0);
+	}
+}
@@ -0,0 +1,11 @@
+package ope;
+
+/**
+ * Incremental decryption of a single ciphertext value.
+ * The concatenated output of all update calls followed by finish is equal
+ * to the output of Key.decrypt for the concatenated input.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public interface Decryptor extends Processor {
+}
@@ -0,0 +1,11 @@
+package ope;
+
+/**
+ * Incremental encryption of a single plaintext value.
+ * The concatenated output of all update calls followed by finish is equal
+ * to the output of Key.encrypt for the concatenated input.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public interface Encryptor extends Processor {
+}
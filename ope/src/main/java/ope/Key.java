@@ -1,5 +1,13 @@
 package ope;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
 import ope.util.Encoder;
 
 /**
@@ -7,6 +15,9 @@ import ope.util.Encoder;
  * Provides methods for encrypting and decrypting data, as well as
  * encoding the key to binary format.
  * 
+ * Keys that can process data block by block override encryptor and
+ * decryptor; the default implementations buffer the whole value.
+ * 
  * @author Ayman Madkour <info@aymanmadkour.com>
  */
 public interface Key {
@@ -15,6 +26,22 @@ public interface Key {
 
 	public byte[] encrypt(byte[] plaintext);
 
+	/**
+	 * Encrypts plaintext into ciphertext, starting at its current position.
+	 * The buffer must have at least getCiphertextLength(plaintext.length)
+	 * bytes remaining.
+	 */
+	public default void encrypt(byte[] plaintext, ByteBuffer ciphertext) {
+		ciphertext.put(encrypt(plaintext));
+	}
+
+	/**
+	 * Returns the length of the ciphertext of a plaintext of the given length.
+	 */
+	public default int getCiphertextLength(int plaintextLength) {
+		return encrypt(new byte[plaintextLength]).length;
+	}
+
 	public default byte[] encryptBoolean(boolean plaintext) {
 		return encrypt(Encoder.encodeBoolean(plaintext));
 	}
@@ -51,8 +78,141 @@ public interface Key {
 		return encrypt(Encoder.encodeString(plaintext));
 	}
 
+	public default byte[] encryptBigInteger(BigInteger plaintext) {
+		return encrypt(Encoder.encodeBigInteger(plaintext));
+	}
+
+	public default byte[] encryptBigDecimal(BigDecimal plaintext) {
+		return encrypt(Encoder.encodeBigDecimal(plaintext));
+	}
+
+	public default byte[] encryptInstant(Instant plaintext) {
+		return encrypt(Encoder.encodeInstant(plaintext));
+	}
+
+	public default byte[] encryptLocalDate(LocalDate plaintext) {
+		return encrypt(Encoder.encodeLocalDate(plaintext));
+	}
+
+	public default byte[] encryptLocalDateTime(LocalDateTime plaintext) {
+		return encrypt(Encoder.encodeLocalDateTime(plaintext));
+	}
+
+	public default byte[] encryptUUID(UUID plaintext) {
+		return encrypt(Encoder.encodeUUID(plaintext));
+	}
+
+	/**
+	 * Encrypts plaintext directly into arena, returning the ordinal of its
+	 * ciphertext.
+	 */
+	public default int encrypt(byte[] plaintext, CiphertextArena arena) {
+		return arena.append(this, plaintext);
+	}
+
+	public default int encryptBoolean(boolean plaintext, CiphertextArena arena) {
+		return encrypt(Encoder.encodeBoolean(plaintext), arena);
+	}
+
+	public default int encryptByte(byte plaintext, CiphertextArena arena) {
+		return encrypt(Encoder.encodeByte(plaintext), arena);
+	}
+
+	public default int encryptShort(short plaintext, CiphertextArena arena) {
+		return encrypt(Encoder.encodeShort(plaintext), arena);
+	}
+
+	public default int encryptInt(int plaintext, CiphertextArena arena) {
+		return encrypt(Encoder.encodeInt(plaintext), arena);
+	}
+
+	public default int encryptLong(long plaintext, CiphertextArena arena) {
+		return encrypt(Encoder.encodeLong(plaintext), arena);
+	}
+
+	public default int encryptFloat(float plaintext, CiphertextArena arena) {
+		return encrypt(Encoder.encodeFloat(plaintext), arena);
+	}
+
+	public default int encryptDouble(double plaintext, CiphertextArena arena) {
+		return encrypt(Encoder.encodeDouble(plaintext), arena);
+	}
+
+	public default int encryptChar(char plaintext, CiphertextArena arena) {
+		return encrypt(Encoder.encodeChar(plaintext), arena);
+	}
+
+	public default int encryptString(String plaintext, CiphertextArena arena) {
+		return encrypt(Encoder.encodeString(plaintext), arena);
+	}
+
+	public default int encryptBigInteger(BigInteger plaintext, CiphertextArena arena) {
+		return encrypt(Encoder.encodeBigInteger(plaintext), arena);
+	}
+
+	public default int encryptBigDecimal(BigDecimal plaintext, CiphertextArena arena) {
+		return encrypt(Encoder.encodeBigDecimal(plaintext), arena);
+	}
+
+	public default int encryptInstant(Instant plaintext, CiphertextArena arena) {
+		return encrypt(Encoder.encodeInstant(plaintext), arena);
+	}
+
+	public default int encryptLocalDate(LocalDate plaintext, CiphertextArena arena) {
+		return encrypt(Encoder.encodeLocalDate(plaintext), arena);
+	}
+
+	public default int encryptLocalDateTime(LocalDateTime plaintext, CiphertextArena arena) {
+		return encrypt(Encoder.encodeLocalDateTime(plaintext), arena);
+	}
+
+	public default int encryptUUID(UUID plaintext, CiphertextArena arena) {
+		return encrypt(Encoder.encodeUUID(plaintext), arena);
+	}
+
+	public default Encryptor encryptor() {
+		return new BufferedProcessor(this::encrypt);
+	}
+
+	/**
+	 * Returns the range of ciphertexts of all plaintexts starting with prefix,
+	 * for keys that encrypt each plaintext byte independently.
+	 */
+	public default CiphertextRange encryptPrefixRange(byte[] prefix) {
+		throw new OpeException("Prefix ranges are not supported by " + getClass().getSimpleName() + ".");
+	}
+
+	public default CiphertextRange encryptPrefixRange(String prefix) {
+		return encryptPrefixRange(Encoder.encodeString(prefix));
+	}
+
 	public byte[] decrypt(byte[] ciphertext);
 
+	/**
+	 * Decrypts many ciphertexts at once. Keys override this when batches can
+	 * be decrypted faster than one ciphertext at a time.
+	 */
+	public default byte[][] decrypt(byte[][] ciphertexts) {
+		byte[][] plaintexts = new byte[ciphertexts.length][];
+		for (int i = 0; i < ciphertexts.length; i++) { plaintexts[i] = decrypt(ciphertexts[i]); }
+		return plaintexts;
+	}
+
+	/**
+	 * Decrypts many ciphertexts at once, each being the remaining bytes of a
+	 * buffer (e.g. a slice of a CiphertextArena slab). Buffers are not
+	 * modified. Keys override this to read ciphertexts in place; by default,
+	 * they are copied and passed to decrypt(byte[][]).
+	 */
+	public default byte[][] decrypt(ByteBuffer[] ciphertexts) {
+		byte[][] copies = new byte[ciphertexts.length][];
+		for (int i = 0; i < ciphertexts.length; i++) {
+			copies[i] = new byte[ciphertexts[i].remaining()];
+			ciphertexts[i].duplicate().get(copies[i]);
+		}
+		return decrypt(copies);
+	}
+
 	public default boolean decryptBoolean(byte[] ciphertext) {
 		return Encoder.decodeBoolean(decrypt(ciphertext));
 	}
@@ -88,4 +248,32 @@ public interface Key {
 	public default String decryptString(byte[] ciphertext) {
 		return Encoder.decodeString(decrypt(ciphertext));
 	}
+
+	public default BigInteger decryptBigInteger(byte[] ciphertext) {
+		return Encoder.decodeBigInteger(decrypt(ciphertext));
+	}
+
+	public default BigDecimal decryptBigDecimal(byte[] ciphertext) {
+		return Encoder.decodeBigDecimal(decrypt(ciphertext));
+	}
+
+	public default Instant decryptInstant(byte[] ciphertext) {
+		return Encoder.decodeInstant(decrypt(ciphertext));
+	}
+
+	public default LocalDate decryptLocalDate(byte[] ciphertext) {
+		return Encoder.decodeLocalDate(decrypt(ciphertext));
+	}
+
+	public default LocalDateTime decryptLocalDateTime(byte[] ciphertext) {
+		return Encoder.decodeLocalDateTime(decrypt(ciphertext));
+	}
+
+	public default UUID decryptUUID(byte[] ciphertext) {
+		return Encoder.decodeUUID(decrypt(ciphertext));
+	}
+
+	public default Decryptor decryptor() {
+		return new BufferedProcessor(this::decrypt);
+	}
 }
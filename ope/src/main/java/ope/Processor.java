@@ -0,0 +1,19 @@
+package ope;
+
+/**
+ * General interface for incremental encryption and decryption.
+ * Input is passed in chunks through update, and the remaining output is
+ * produced by finish, after which the processor can be reused.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public interface Processor {
+
+	public byte[] update(byte[] input, int offset, int length) throws OpeException;
+
+	public default byte[] update(byte[] input) throws OpeException {
+		return update(input, 0, input.length);
+	}
+
+	public byte[] finish() throws OpeException;
+}
@@ -0,0 +1,38 @@
+package ope.aggregate;
+
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * General interface for streaming aggregates computed directly on ciphertexts.
+ * 
+ * Aggregates rely on ciphertext order being the same as plaintext order,
+ * which holds for FastOpeKey. MopeKey ciphertexts are ordered by the
+ * plaintext rotated by a secret offset, so results are in that rotated order.
+ * 
+ * Aggregates are not thread-safe. Parallel aggregation uses one instance per
+ * thread, and merges them at the end.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public interface Aggregate<T extends Aggregate<T>> {
+	
+	public void add(byte[] ciphertext, int offset, int length);
+	
+	public default void add(byte[] ciphertext) {
+		add(ciphertext, 0, ciphertext.length);
+	}
+	
+	/**
+	 * Merges another aggregate of the same kind into this one.
+	 * The other aggregate is not modified.
+	 */
+	public void merge(T other);
+	
+	/**
+	 * Aggregates a stream of ciphertexts in parallel.
+	 */
+	public static <T extends Aggregate<T>> T aggregate(Stream<byte[]> ciphertexts, Supplier<T> factory) {
+		return ciphertexts.parallel().collect(factory, Aggregate::add, Aggregate::merge);
+	}
+}
@@ -0,0 +1,52 @@
+package ope.aggregate;
+
+import java.util.Arrays;
+
+import ope.util.CiphertextComparator;
+
+/**
+ * Computes the minimum and maximum ciphertexts.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public class MinMax implements Aggregate<MinMax> {
+	
+	private byte[] min = null;
+	private byte[] max = null;
+	private long count = 0;
+	
+	public byte[] getMin() {
+		return min;
+	}
+	
+	public byte[] getMax() {
+		return max;
+	}
+	
+	public long getCount() {
+		return count;
+	}
+
+	public void add(byte[] ciphertext, int offset, int length) {
+		count++;
+		
+		// Copy ciphertext only if it is kept
+		if (min == null || CiphertextComparator.compare(ciphertext, offset, length, min, 0, min.length) < 0) {
+			min = Arrays.copyOfRange(ciphertext, offset, offset + length);
+		}
+		if (max == null || CiphertextComparator.compare(ciphertext, offset, length, max, 0, max.length) > 0) {
+			max = Arrays.copyOfRange(ciphertext, offset, offset + length);
+		}
+	}
+
+	public void merge(MinMax other) {
+		count += other.count;
+		
+		if (other.min != null && (min == null || CiphertextComparator.INSTANCE.compare(other.min, min) < 0)) {
+			min = other.min;
+		}
+		if (other.max != null && (max == null || CiphertextComparator.INSTANCE.compare(other.max, max) > 0)) {
+			max = other.max;
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package ope.aggregate;
+
+import ope.partition.CiphertextSketch;
+
+/**
+ * Computes approximate quantiles (e.g. the median) of ciphertexts, using a
+ * mergeable CiphertextSketch. Results are exact while the number of
+ * ciphertexts does not exceed the sketch capacity.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public class Quantiles implements Aggregate<Quantiles> {
+	
+	private final CiphertextSketch sketch;
+	
+	public Quantiles() {
+		this.sketch = new CiphertextSketch();
+	}
+	
+	public Quantiles(int capacity) {
+		this.sketch = new CiphertextSketch(capacity);
+	}
+	
+	public long getCount() {
+		return sketch.getCount();
+	}
+	
+	public byte[] quantile(double q) {
+		return sketch.quantile(q);
+	}
+	
+	public byte[] median() {
+		return sketch.quantile(0.5);
+	}
+
+	public void add(byte[] ciphertext, int offset, int length) {
+		sketch.add(ciphertext, offset, length);
+	}
+
+	public void merge(Quantiles other) {
+		sketch.merge(other.sketch);
+	}
+}
@@ -0,0 +1,96 @@
+package ope.aggregate;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import ope.Key;
+import ope.util.CiphertextComparator;
+
+/**
+ * Computes the k largest or k smallest ciphertexts, as in
+ * ORDER BY ... LIMIT k, using a bounded heap.
+ * Only the final k results need to be decrypted.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public class TopK implements Aggregate<TopK> {
+	
+	private final int k;
+	private final boolean largest;
+	
+	// Ranks ciphertexts from worst to best, so that the worst result is on top of the heap
+	private final Comparator<byte[]> order;
+	private final PriorityQueue<byte[]> heap;
+	
+	public TopK(int k, boolean largest) {
+		this.k = k;
+		this.largest = largest;
+		this.order = largest ? CiphertextComparator.INSTANCE : CiphertextComparator.INSTANCE.reversed();
+		this.heap = new PriorityQueue<>(Math.max(1, k), order);
+	}
+	
+	public static TopK largest(int k) {
+		return new TopK(k, true);
+	}
+	
+	public static TopK smallest(int k) {
+		return new TopK(k, false);
+	}
+	
+	public int getK() {
+		return k;
+	}
+	
+	public boolean isLargest() {
+		return largest;
+	}
+	
+	/**
+	 * Returns the results, best first.
+	 */
+	public byte[][] getResults() {
+		byte[][] results = heap.toArray(new byte[heap.size()][]);
+		Arrays.sort(results, order.reversed());
+		return results;
+	}
+	
+	/**
+	 * Decrypts the results, best first.
+	 */
+	public byte[][] decrypt(Key key) {
+		byte[][] results = getResults();
+		for (int i = 0; i < results.length; i++) { results[i] = key.decrypt(results[i]); }
+		return results;
+	}
+
+	public void add(byte[] ciphertext, int offset, int length) {
+		if (k <= 0) { return; }
+		
+		if (heap.size() < k) {
+			heap.add(Arrays.copyOfRange(ciphertext, offset, offset + length));
+			
+		} else if (compare(ciphertext, offset, length, heap.peek()) > 0) {
+			// Copy ciphertext only if it is kept
+			heap.poll();
+			heap.add(Arrays.copyOfRange(ciphertext, offset, offset + length));
+		}
+	}
+
+	public void merge(TopK other) {
+		for (byte[] ciphertext : other.heap) {
+			if (heap.size() < k) {
+				heap.add(ciphertext);
+				
+			} else if (order.compare(ciphertext, heap.peek()) > 0) {
+				heap.poll();
+				heap.add(ciphertext);
+			}
+		}
+	}
+	
+	private int compare(byte[] ciphertext, int offset, int length, byte[] other) {
+		int result = CiphertextComparator.compare(ciphertext, offset, length, other, 0, other.length);
+		return largest ? result : -result;
+	}
+}
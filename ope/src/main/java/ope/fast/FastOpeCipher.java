@@ -2,10 +2,14 @@ package ope.fast;
 
 import java.nio.ByteBuffer;
 import java.security.SecureRandom;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
 
 import ope.Cipher;
 import ope.Key;
 import ope.OpeException;
+import ope.util.KeyDerivation;
+import ope.util.ThreadLocalSecureRandom;
 
 /**
  * Cipher implementation of Hwang et al's Fast Order-Preserving Encryption scheme.
@@ -23,8 +27,6 @@ public class FastOpeCipher implements Cipher {
 	
 	private static final int DEFAULT_TAU = 16;
 	
-	private final SecureRandom rnd = new SecureRandom();
-	
 	private int tau = DEFAULT_TAU;
 	
 	public int getTau() {
@@ -36,13 +38,18 @@ public class FastOpeCipher implements Cipher {
 	}
 
 	public Key generateKey() throws OpeException {
-		double alpha = rnd.nextDouble() / 2.0;
-		double beta = 1.0 - alpha;
-		double e = rnd.nextDouble() * alpha;
-		long n = (long) Math.ceil((double) tau / (beta * Math.pow(e, 8)));
-		long k = rnd.nextLong() & 0x7fffffffffffffffl;
+		return decodeKey(generateEncodedKey());
+	}
+	
+	public byte[] generateEncodedKey() throws OpeException {
+		SecureRandom rnd = ThreadLocalSecureRandom.current();
 		
-		return new FastOpeKey(n, alpha, e, k);
+		// Encode parameters directly, without building the key
+		return drawKey(rnd::nextDouble, rnd::nextLong);
+	}
+
+	public Key deriveKey(KeyDerivation kdf) throws OpeException {
+		return decodeKey(drawKey(kdf::nextDouble, kdf::nextLong));
 	}
 
 	public Key decodeKey(byte[] bytes) throws OpeException {
@@ -55,4 +62,25 @@ public class FastOpeCipher implements Cipher {
 		
 		return new FastOpeKey(n, alpha, e, k);
 	}
+	
+	private byte[] drawKey(DoubleSupplier nextDouble, LongSupplier nextLong) {
+		double alpha, e;
+		long n;
+		
+		// Draw parameters until they produce a usable key
+		do {
+			alpha = nextDouble.getAsDouble() / 2.0;
+			e = nextDouble.getAsDouble() * alpha;
+			n = calculateN(alpha, e);
+		} while (!FastOpeKey.isValid(n, alpha, e));
+		
+		long k = nextLong.getAsLong() & 0x7fffffffffffffffl;
+		
+		return FastOpeKey.encode(n, alpha, e, k);
+	}
+	
+	private long calculateN(double alpha, double e) {
+		double beta = 1.0 - alpha;
+		return (long) Math.ceil((double) tau / (beta * Math.pow(e, 8)));
+	}
 }
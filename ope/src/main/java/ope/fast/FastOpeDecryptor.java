@@ -0,0 +1,77 @@
+package ope.fast;
+
+import ope.Decryptor;
+import ope.OpeException;
+
+/**
+ * Incremental decryptor for Fast OPE keys.
+ * The last block cannot be decrypted before the padding byte following it
+ * is known, so one block plus one byte is held back until more input
+ * arrives or the decryptor is finished.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+class FastOpeDecryptor implements Decryptor {
+	
+	private final FastOpeKey key;
+	
+	private final int plaintextBytesPerBlock;
+	private final int ciphertextBytesPerBlock;
+	
+	private final byte[] pending;
+	private int pendingLength = 0;
+	
+	FastOpeDecryptor(FastOpeKey key) {
+		this.key = key;
+		this.plaintextBytesPerBlock = key.getPlaintextBytesPerBlock();
+		this.ciphertextBytesPerBlock = key.getCiphertextBytesPerBlock();
+		this.pending = new byte[ciphertextBytesPerBlock + 1];
+	}
+
+	public byte[] update(byte[] input, int offset, int length) throws OpeException {
+		// A block is known not to be the last one once two more bytes follow it
+		int total = pendingLength + length;
+		int blockCount = (total >= 2) ? (total - 2) / ciphertextBytesPerBlock : 0;
+		byte[] plaintext = new byte[blockCount * plaintextBytesPerBlock];
+		int plaintextOffset = 0;
+		
+		while (length > 0) {
+			if (pendingLength == pending.length) {
+				key.decryptBlock(pending, 0, plaintext, plaintextOffset, plaintextBytesPerBlock);
+				plaintextOffset += plaintextBytesPerBlock;
+				
+				pending[0] = pending[ciphertextBytesPerBlock];
+				pendingLength = 1;
+			}
+			
+			int count = Math.min(length, pending.length - pendingLength);
+			System.arraycopy(input, offset, pending, pendingLength, count);
+			pendingLength += count;
+			offset += count;
+			length -= count;
+		}
+		
+		return plaintext;
+	}
+
+	public byte[] finish() throws OpeException {
+		int padding = (pendingLength > 0) ? pending[pendingLength - 1] : -1;
+		
+		// Check ciphertext and padding
+		if ((pendingLength != 1 && pendingLength != pending.length)
+				|| padding < 0 || padding >= plaintextBytesPerBlock
+				|| (pendingLength == 1 && padding != 0)) {
+			pendingLength = 0;
+			throw new OpeException("Invalid ciphertext.");
+		}
+		
+		// Decrypt last block
+		byte[] plaintext = new byte[(pendingLength > 1) ? plaintextBytesPerBlock - padding : 0];
+		if (pendingLength > 1) {
+			key.decryptBlock(pending, 0, plaintext, 0, plaintext.length);
+		}
+		
+		pendingLength = 0;
+		return plaintext;
+	}
+}
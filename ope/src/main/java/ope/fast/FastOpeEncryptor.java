@@ -0,0 +1,78 @@
+package ope.fast;
+
+import java.nio.ByteBuffer;
+
+import ope.Encryptor;
+import ope.OpeException;
+
+/**
+ * Incremental encryptor for Fast OPE keys.
+ * Blocks are independent, so each complete block is encrypted as soon as it
+ * is available, and only a single partial block is ever buffered.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+class FastOpeEncryptor implements Encryptor {
+	
+	private final FastOpeKey key;
+	
+	private final int plaintextBytesPerBlock;
+	private final int ciphertextBytesPerBlock;
+	
+	private final byte[] block;
+	private int blockLength = 0;
+	
+	FastOpeEncryptor(FastOpeKey key) {
+		this.key = key;
+		this.plaintextBytesPerBlock = key.getPlaintextBytesPerBlock();
+		this.ciphertextBytesPerBlock = key.getCiphertextBytesPerBlock();
+		this.block = new byte[plaintextBytesPerBlock];
+	}
+
+	public byte[] update(byte[] input, int offset, int length) throws OpeException {
+		// Calculate number of complete blocks
+		int blockCount = (blockLength + length) / plaintextBytesPerBlock;
+		ByteBuffer ciphertextBuffer = ByteBuffer.allocate(blockCount * ciphertextBytesPerBlock);
+		
+		// Complete buffered block
+		if (blockLength > 0 && blockCount > 0) {
+			int count = plaintextBytesPerBlock - blockLength;
+			System.arraycopy(input, offset, block, blockLength, count);
+			key.encryptBlock(block, 0, plaintextBytesPerBlock, ciphertextBuffer);
+			
+			offset += count;
+			length -= count;
+			blockLength = 0;
+		}
+		
+		// Encrypt complete blocks directly from input
+		while (length >= plaintextBytesPerBlock) {
+			key.encryptBlock(input, offset, plaintextBytesPerBlock, ciphertextBuffer);
+			
+			offset += plaintextBytesPerBlock;
+			length -= plaintextBytesPerBlock;
+		}
+		
+		// Buffer remaining bytes
+		System.arraycopy(input, offset, block, blockLength, length);
+		blockLength += length;
+		
+		return ciphertextBuffer.array();
+	}
+
+	public byte[] finish() throws OpeException {
+		int padding = (blockLength > 0) ? plaintextBytesPerBlock - blockLength : 0;
+		ByteBuffer ciphertextBuffer = ByteBuffer.allocate((blockLength > 0 ? ciphertextBytesPerBlock : 0) + 1);
+		
+		// Encrypt last partial block
+		if (blockLength > 0) {
+			key.encryptBlock(block, 0, blockLength, ciphertextBuffer);
+			blockLength = 0;
+		}
+		
+		// Add padding info
+		ciphertextBuffer.put((byte) padding);
+		
+		return ciphertextBuffer.array();
+	}
+}
@@ -4,7 +4,11 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
+import java.util.Arrays;
 
+import ope.CiphertextRange;
+import ope.Decryptor;
+import ope.Encryptor;
 import ope.Key;
 import ope.OpeException;
 
@@ -39,6 +43,9 @@ public class FastOpeKey implements Key {
 	private final long[] fmin;
 	private final long[] fmax;
 	
+	// Ciphertext values of all 256 byte values, computed on first batch decryption
+	private volatile long[] thresholds;
+	
 	private final int[] bitMasks = new int[] {
 			0x00,
 			0x80,
@@ -65,28 +72,11 @@ public class FastOpeKey implements Key {
 		
 		this.fmin = new long[9];
 		this.fmax = new long[9];
+		computeBounds(n, alpha, e, fmin, fmax);
 		
-		BigDecimal bigAlpha = new BigDecimal(this.alpha);
-		BigDecimal bigBeta = new BigDecimal(this.beta);
-		BigDecimal bigN = new BigDecimal(this.n);
-		BigDecimal bigE = new BigDecimal(this.e);
-		
-		for (int i = 0; i < 9; i++) {
-			BigDecimal factor = bigN.multiply(bigE.pow(i));
-			fmin[i] = bigAlpha.multiply(factor).setScale(0, BigDecimal.ROUND_FLOOR).longValue();
-			fmax[i] = bigBeta.multiply(factor).setScale(0, BigDecimal.ROUND_CEILING).longValue();
-		}
-		
-		int cipherBits = 0;
-		for (long b = n; b > 0; b >>= 1) { cipherBits++; }
+		int cipherBits = cipherBits(n);
 		this.ciphertextBitsPerByte = cipherBits;
-		
-		long ciphertextBitMask = 1;
-		for (int i = 1; i < ciphertextBitsPerByte; i++) {
-			ciphertextBitMask <<= 1;
-			ciphertextBitMask |= 1;
-		}
-		this.ciphertextBitMask = ciphertextBitMask;
+		this.ciphertextBitMask = bitMask(cipherBits);
 		
 		int plaintextBytesPerBlock = 0;
 		
@@ -102,6 +92,10 @@ public class FastOpeKey implements Key {
 	}
 
 	public byte[] encodeKey() throws OpeException {
+		return encode(n, alpha, e, k);
+	}
+	
+	static byte[] encode(long n, double alpha, double e, long k) {
 		ByteBuffer buffer = ByteBuffer.allocate(2 * Long.BYTES
 				+ 2 * Double.BYTES);
 		
@@ -112,59 +106,100 @@ public class FastOpeKey implements Key {
 		
 		return buffer.array();
 	}
+	
+	/**
+	 * Checks that a key with the given parameters can encrypt and decrypt
+	 * every byte value. This requires that each pseudorandom value f(i) is
+	 * always larger than the sum of all values f(j) where j > i, and that the
+	 * largest ciphertext fits in the ciphertext bit width.
+	 */
+	static boolean isValid(long n, double alpha, double e) {
+		// Leave room for summing up to nine values without overflow
+		if (n <= 0 || n > Long.MAX_VALUE / 2) { return false; }
+		
+		long[] fmin = new long[9];
+		long[] fmax = new long[9];
+		computeBounds(n, alpha, e, fmin, fmax);
+		
+		long rest = 0;
+		for (int i = 8; i >= 0; i--) {
+			if (fmax[i] <= fmin[i] || fmin[i] <= rest) { return false; }
+			rest += fmax[i];
+		}
+		
+		return rest <= bitMask(cipherBits(n));
+	}
+	
+	private static void computeBounds(long n, double alpha, double e, long[] fmin, long[] fmax) {
+		BigDecimal bigAlpha = new BigDecimal(alpha);
+		BigDecimal bigBeta = new BigDecimal(1.0 - alpha);
+		BigDecimal bigN = new BigDecimal(n);
+		BigDecimal bigE = new BigDecimal(e);
+		
+		for (int i = 0; i < 9; i++) {
+			BigDecimal factor = bigN.multiply(bigE.pow(i));
+			fmin[i] = bigAlpha.multiply(factor).setScale(0, BigDecimal.ROUND_FLOOR).longValue();
+			fmax[i] = bigBeta.multiply(factor).setScale(0, BigDecimal.ROUND_CEILING).longValue();
+		}
+	}
+	
+	private static int cipherBits(long n) {
+		int cipherBits = 0;
+		for (long b = n; b > 0; b >>= 1) { cipherBits++; }
+		return cipherBits;
+	}
+	
+	private static long bitMask(int bits) {
+		long bitMask = 1;
+		for (int i = 1; i < bits; i++) {
+			bitMask <<= 1;
+			bitMask |= 1;
+		}
+		return bitMask;
+	}
 
 	public byte[] encrypt(byte[] plaintext) throws OpeException {
-		// Calculate ciphertext size
-		// Add one extra byte for padding info
+		// Allocate buffer
+		ByteBuffer ciphertextBuffer = ByteBuffer.allocate(getCiphertextLength(plaintext.length));
+		
+		// Encrypt
+		encrypt(plaintext, ciphertextBuffer);
+		
+		// Done
+		return ciphertextBuffer.array();
+	}
+	
+	public void encrypt(byte[] plaintext, ByteBuffer ciphertextBuffer) throws OpeException {
+		// Calculate block count and padding
 		int blockCount = (plaintext.length
 				+ plaintextBytesPerBlock - 1)
 				/ plaintextBytesPerBlock;
 		
-		int ciphertextSize = blockCount
-				* ciphertextBytesPerBlock
-				+ 1;
-		
 		int padding = blockCount
 				* plaintextBytesPerBlock
 				- plaintext.length;
 		
-		// Allocate buffer
-		ByteBuffer plaintextBuffer = ByteBuffer.wrap(plaintext);
-		ByteBuffer ciphertextBuffer = ByteBuffer.allocate(ciphertextSize);
-		
 		// Encrypt blocks
 		for (int block = 0; block < blockCount; block++) {
-			BigInteger blockCipher = BigInteger.valueOf(0);
-			
-			for (int i = 0; i < plaintextBytesPerBlock; i++) {
-				long cipher = 0;
-				if (plaintextBuffer.position() < plaintext.length) {
-					int b = Byte.toUnsignedInt(plaintextBuffer.get());
-					cipher = f(0, 0);
-					for (int j = 1; j <= 8; j++) { cipher += ((b & bitMasks[j]) == 0 ? -1 : 1) * f(j, b); }
-				}
-				blockCipher = blockCipher.shiftLeft(ciphertextBitsPerByte).or(BigInteger.valueOf(cipher));
-			}
-			
-			byte[] blockCipherBytes = blockCipher.toByteArray();
-			
-			if (blockCipherBytes.length < ciphertextBytesPerBlock) {
-				int diff = ciphertextBytesPerBlock - blockCipherBytes.length;
-				for (int i = 0; i < diff; i++) { ciphertextBuffer.put((byte) 0); }
-
-				ciphertextBuffer.put(blockCipherBytes);
-				
-			} else {
-				ciphertextBuffer.put(blockCipherBytes, blockCipherBytes.length - ciphertextBytesPerBlock, ciphertextBytesPerBlock);
-			}
-			
+			int plaintextOffset = block * plaintextBytesPerBlock;
+			encryptBlock(plaintext, plaintextOffset,
+					Math.min(plaintextBytesPerBlock, plaintext.length - plaintextOffset),
+					ciphertextBuffer);
 		}
 		
 		// Add padding info
 		ciphertextBuffer.put((byte) padding);
+	}
+	
+	public int getCiphertextLength(int plaintextLength) {
+		// Add one extra byte for padding info
+		int blockCount = (plaintextLength
+				+ plaintextBytesPerBlock - 1)
+				/ plaintextBytesPerBlock;
 		
-		// Done
-		return ciphertextBuffer.array();
+		return blockCount
+				* ciphertextBytesPerBlock
+				+ 1;
 	}
 
 	public byte[] decrypt(byte[] ciphertext) throws OpeException {
@@ -172,41 +207,224 @@ public class FastOpeKey implements Key {
 		int blockCount = (ciphertext.length - 1) / ciphertextBytesPerBlock;
 		int plaintextSize = blockCount * plaintextBytesPerBlock - ciphertext[ciphertext.length - 1];
 		
-		// Allocate buffers
-		ByteBuffer plaintextBuffer = ByteBuffer.allocate(plaintextSize);
-		ByteBuffer ciphertextBuffer = ByteBuffer.wrap(ciphertext);
+		// Allocate buffer
+		byte[] plaintext = new byte[plaintextSize];
 		
 		// Decrypt blocks
 		for (int block = 0; block < blockCount; block++) {
-			byte[] blockBytes = new byte[ciphertextBytesPerBlock];
-			ciphertextBuffer.get(blockBytes);
-			BigInteger blockCipher = new BigInteger(blockBytes);
-
 			int plaintextOffset = block * plaintextBytesPerBlock;
+			decryptBlock(ciphertext, block * ciphertextBytesPerBlock, plaintext, plaintextOffset,
+					Math.min(plaintextBytesPerBlock, plaintextSize - plaintextOffset));
+		}
+		
+		// Done
+		return plaintext;
+	}
+	
+	/**
+	 * Each plaintext byte is encrypted into the same number of bits, and blocks
+	 * always end on byte boundaries, so ciphertexts of all plaintexts starting
+	 * with prefix start with the same bits: the encrypted prefix bytes.
+	 * The range covers every ciphertext starting with those bits, regardless
+	 * of block boundaries and the trailing padding byte.
+	 */
+	public CiphertextRange encryptPrefixRange(byte[] prefix) throws OpeException {
+		// Concatenate encrypted prefix bytes
+		BigInteger prefixCipher = BigInteger.valueOf(0);
+		for (byte b : prefix) {
+			prefixCipher = prefixCipher.shiftLeft(ciphertextBitsPerByte)
+					.or(BigInteger.valueOf(encryptByte(Byte.toUnsignedInt(b))));
+		}
+		
+		// Extend to whole bytes
+		int prefixBits = prefix.length * ciphertextBitsPerByte;
+		int prefixBytes = (prefixBits + 7) / 8;
+		int extraBits = prefixBytes * 8 - prefixBits;
+		
+		// Lower bound is the prefix followed by zeros
+		byte[] lower = toBytes(prefixCipher.shiftLeft(extraBits), prefixBytes);
+		
+		// Upper bound is the next prefix followed by zeros, unless the prefix is all ones
+		BigInteger nextPrefixCipher = prefixCipher.add(BigInteger.ONE);
+		byte[] upper = (nextPrefixCipher.bitLength() > prefixBits) ? null
+				: toBytes(nextPrefixCipher.shiftLeft(extraBits), prefixBytes);
+		
+		return new CiphertextRange(lower, upper);
+	}
+	
+	/**
+	 * Decrypts many ciphertexts at once. Rather than walking the bits of each
+	 * byte with a hash computation per step, every ciphertext value is looked
+	 * up among the ciphertext values of all 256 byte values, which are
+	 * computed once per key. Lookups are vectorized where supported.
+	 */
+	public byte[][] decrypt(byte[][] ciphertexts) throws OpeException {
+		ByteBuffer[] buffers = new ByteBuffer[ciphertexts.length];
+		for (int c = 0; c < ciphertexts.length; c++) { buffers[c] = ByteBuffer.wrap(ciphertexts[c]); }
+		return decrypt(buffers);
+	}
+	
+	/**
+	 * Decrypts many ciphertexts at once, as decrypt(byte[][]) does, reading
+	 * each ciphertext in place from the remaining bytes of its buffer.
+	 */
+	public byte[][] decrypt(ByteBuffer[] ciphertexts) throws OpeException {
+		long[] thresholds = getThresholds();
+		
+		// Calculate plaintext sizes
+		int[] plaintextSizes = new int[ciphertexts.length];
+		long total = 0;
+		for (int c = 0; c < ciphertexts.length; c++) {
+			ByteBuffer ciphertext = ciphertexts[c];
+			int blockCount = (ciphertext.remaining() - 1) / ciphertextBytesPerBlock;
+			plaintextSizes[c] = blockCount * plaintextBytesPerBlock - ciphertext.get(ciphertext.limit() - 1);
+			total += plaintextSizes[c];
+		}
+		
+		if (total > Integer.MAX_VALUE) {
+			throw new OpeException("Batch cannot exceed " + Integer.MAX_VALUE + " plaintext bytes.");
+		}
+		
+		// Unpack ciphertext values
+		long[] values = new long[(int) total];
+		int position = 0;
+		for (int c = 0; c < ciphertexts.length; c++) {
+			for (int i = 0; i < plaintextSizes[c]; i++) {
+				long bitOffset = (long) (i / plaintextBytesPerBlock) * ciphertextBytesPerBlock * 8
+						+ (long) (i % plaintextBytesPerBlock) * ciphertextBitsPerByte;
+				values[position++] = readBits(ciphertexts[c], bitOffset, ciphertextBitsPerByte);
+			}
+		}
+		
+		// Resolve all bytes
+		byte[] bytes = new byte[values.length];
+		ThresholdSearch.get().search(thresholds, values, values.length, bytes);
+		
+		// Split plaintexts
+		byte[][] plaintexts = new byte[ciphertexts.length][];
+		position = 0;
+		for (int c = 0; c < ciphertexts.length; c++) {
+			plaintexts[c] = Arrays.copyOfRange(bytes, position, position + plaintextSizes[c]);
+			position += plaintextSizes[c];
+		}
+		
+		return plaintexts;
+	}
+	
+	public Encryptor encryptor() {
+		return new FastOpeEncryptor(this);
+	}
+	
+	public Decryptor decryptor() {
+		return new FastOpeDecryptor(this);
+	}
+	
+	int getPlaintextBytesPerBlock() {
+		return plaintextBytesPerBlock;
+	}
+	
+	int getCiphertextBytesPerBlock() {
+		return ciphertextBytesPerBlock;
+	}
+	
+	/**
+	 * Encrypts length bytes starting at offset into one ciphertext block.
+	 * Missing bytes at the end of a partial block are encoded as zeros.
+	 */
+	void encryptBlock(byte[] plaintext, int offset, int length, ByteBuffer ciphertextBuffer) {
+		BigInteger blockCipher = BigInteger.valueOf(0);
+		
+		for (int i = 0; i < plaintextBytesPerBlock; i++) {
+			long cipher = (i < length) ? encryptByte(Byte.toUnsignedInt(plaintext[offset + i])) : 0;
+			blockCipher = blockCipher.shiftLeft(ciphertextBitsPerByte).or(BigInteger.valueOf(cipher));
+		}
+		
+		byte[] blockCipherBytes = blockCipher.toByteArray();
+		
+		if (blockCipherBytes.length < ciphertextBytesPerBlock) {
+			int diff = ciphertextBytesPerBlock - blockCipherBytes.length;
+			for (int i = 0; i < diff; i++) { ciphertextBuffer.put((byte) 0); }
+
+			ciphertextBuffer.put(blockCipherBytes);
 			
-			for (int i = plaintextBytesPerBlock - 1; i >= 0; i--) {
-				long cipher = blockCipher.and(BigInteger.valueOf(ciphertextBitMask)).longValue();
-				blockCipher = blockCipher.shiftRight(ciphertextBitsPerByte);
-				
-				int b = 0;
-				long a = f(0, 0);
-				if (cipher >= a) { b |= bitMasks[1]; }
+		} else {
+			ciphertextBuffer.put(blockCipherBytes, blockCipherBytes.length - ciphertextBytesPerBlock, ciphertextBytesPerBlock);
+		}
+	}
+	
+	/**
+	 * Decrypts the ciphertext block starting at offset, and writes the first
+	 * length bytes of the result to plaintext starting at plaintextOffset.
+	 */
+	void decryptBlock(byte[] ciphertext, int offset, byte[] plaintext, int plaintextOffset, int length) {
+		byte[] blockBytes = new byte[ciphertextBytesPerBlock];
+		System.arraycopy(ciphertext, offset, blockBytes, 0, ciphertextBytesPerBlock);
+		BigInteger blockCipher = new BigInteger(blockBytes);
+		
+		for (int i = plaintextBytesPerBlock - 1; i >= 0; i--) {
+			long cipher = blockCipher.and(BigInteger.valueOf(ciphertextBitMask)).longValue();
+			blockCipher = blockCipher.shiftRight(ciphertextBitsPerByte);
+			
+			int b = 0;
+			long a = f(0, 0);
+			if (cipher >= a) { b |= bitMasks[1]; }
+			
+			for (int j = 1; j < 8; j++) {
+				long aj = f(j, b);
+				a += ((b & bitMasks[j]) == 0 ? -1 : 1) * aj;
+				if (cipher >= a) { b |= bitMasks[j + 1]; }
+			}
 				
-				for (int j = 1; j < 8; j++) {
-					long aj = f(j, b);
-					a += ((b & bitMasks[j]) == 0 ? -1 : 1) * aj;
-					if (cipher >= a) { b |= bitMasks[j + 1]; }
-				}
-					
-				if (plaintextOffset + i < plaintextSize) {
-					plaintextBuffer.position(plaintextOffset + i);
-					plaintextBuffer.put((byte) b);
-				}
+			if (i < length) {
+				plaintext[plaintextOffset + i] = (byte) b;
 			}
 		}
+	}
+
+	long[] getThresholds() {
+		long[] thresholds = this.thresholds;
+		if (thresholds == null) {
+			thresholds = new long[256];
+			for (int b = 0; b < 256; b++) { thresholds[b] = encryptByte(b); }
+			this.thresholds = thresholds;
+		}
+		return thresholds;
+	}
+	
+	private static long readBits(ByteBuffer bytes, long bitOffset, int bitCount) {
+		long value = 0;
+		int start = bytes.position();
 		
-		// Done
-		return plaintextBuffer.array();
+		while (bitCount > 0) {
+			int b = Byte.toUnsignedInt(bytes.get(start + (int) (bitOffset >>> 3)));
+			int bitInByte = (int) (bitOffset & 7);
+			int count = Math.min(8 - bitInByte, bitCount);
+			
+			value = (value << count) | ((b >>> (8 - bitInByte - count)) & ((1 << count) - 1));
+			bitOffset += count;
+			bitCount -= count;
+		}
+		
+		return value;
+	}
+	
+	private long encryptByte(int b) {
+		long cipher = f(0, 0);
+		for (int j = 1; j <= 8; j++) { cipher += ((b & bitMasks[j]) == 0 ? -1 : 1) * f(j, b); }
+		return cipher;
+	}
+	
+	private static byte[] toBytes(BigInteger value, int size) {
+		byte[] valueBytes = value.toByteArray();
+		byte[] bytes = new byte[size];
+		
+		if (valueBytes.length < size) {
+			System.arraycopy(valueBytes, 0, bytes, size - valueBytes.length, valueBytes.length);
+		} else {
+			System.arraycopy(valueBytes, valueBytes.length - size, bytes, 0, size);
+		}
+		
+		return bytes;
 	}
 
 	private long f(int i, int x) {
@@ -0,0 +1,63 @@
+package ope.fast;
+
+/**
+ * Resolves Fast OPE ciphertext values to plaintext bytes, given the 256
+ * ascending ciphertext values of all byte values (the thresholds).
+ * 
+ * This is the scalar implementation, a branch-free binary search over the
+ * 256 thresholds, which stay in L1 cache. A SIMD implementation that compares
+ * each value against many thresholds at once is used instead when system
+ * property ope.vector is true, and the code runs on JDK 17 or later with the
+ * jdk.incubator.vector module added. It is opt-in, since it only matches the
+ * scalar search on the hardware measured so far.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+class ThresholdSearch {
+	
+	private static final ThresholdSearch INSTANCE = create();
+	
+	static ThresholdSearch get() {
+		return INSTANCE;
+	}
+	
+	static ThresholdSearch create() {
+		return create(Boolean.parseBoolean(System.getProperty("ope.vector", "false")));
+	}
+	
+	/**
+	 * Creates the SIMD implementation if vector is true and it is available,
+	 * or the scalar implementation otherwise.
+	 */
+	static ThresholdSearch create(boolean vector) {
+		if (vector) {
+			try {
+				return (ThresholdSearch) Class.forName("ope.fast.VectorThresholdSearch").getDeclaredConstructor().newInstance();
+				
+			} catch (Exception | LinkageError e) {
+				// Not built, older JDK, or vector module not added
+			}
+		}
+		
+		return new ThresholdSearch();
+	}
+	
+	/**
+	 * For each of the first count values, writes the largest byte whose
+	 * threshold is less than or equal to the value to results.
+	 */
+	void search(long[] thresholds, long[] values, int count, byte[] results) {
+		for (int i = 0; i < count; i++) {
+			long value = values[i];
+			int index = 0;
+			for (int step = 128; step > 0; step >>= 1) {
+				index += (value >= thresholds[index + step]) ? step : 0;
+			}
+			results[i] = (byte) index;
+		}
+	}
+	
+	boolean isVectorized() {
+		return false;
+	}
+}
@@ -0,0 +1,387 @@
+package ope.index;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntFunction;
+import java.util.function.LongConsumer;
+
+import ope.OpeException;
+
+/**
+ * Off-heap hash index mapping ciphertexts to row IDs, for equality lookups
+ * on deterministic ciphertexts (e.g. those produced by FastOpeKey and MopeKey).
+ * 
+ * The index uses open addressing with linear probing, with one slot per
+ * distinct ciphertext. The row IDs of a ciphertext are kept in a linked
+ * postings list, so repeated ciphertexts (e.g. in low-cardinality columns)
+ * do not lengthen probe sequences. Slots, ciphertext bytes and postings live
+ * in buffers obtained from an allocator (direct buffers by default, or
+ * memory-mapped buffers), so entries cost no heap objects.
+ * 
+ * Slot layout (24 bytes):
+ * 
+ *   int  hash (0 marks an empty slot)
+ *   int  ciphertext offset in key buffer
+ *   int  ciphertext length
+ *   int  first posting
+ *   int  last posting
+ *   int  posting count
+ * 
+ * Posting layout (12 bytes):
+ * 
+ *   long row ID
+ *   int  next posting (-1 for none)
+ * 
+ * Writes are serialized, while lookups run concurrently with each other and
+ * with writes, including resizing, using optimistic reads that are retried
+ * under a read lock if a write interferes.
+ * 
+ * Each buffer is limited to 2 GB, which bounds the index to about 33 million
+ * distinct ciphertexts, 178 million entries and 2 GB of distinct ciphertext
+ * bytes.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public class CiphertextHashIndex {
+	
+	private static final int DEFAULT_CAPACITY = 1024;
+	private static final int DEFAULT_KEY_CAPACITY = 16 * 1024;
+	private static final int DEFAULT_POSTING_CAPACITY = 1024;
+	
+	private static final int SLOT_BYTES = 24;
+	private static final int HASH_OFFSET = 0;
+	private static final int KEY_OFFSET_OFFSET = 4;
+	private static final int KEY_LENGTH_OFFSET = 8;
+	private static final int FIRST_POSTING_OFFSET = 12;
+	private static final int LAST_POSTING_OFFSET = 16;
+	private static final int POSTING_COUNT_OFFSET = 20;
+	
+	private static final int POSTING_BYTES = 12;
+	private static final int ROW_ID_OFFSET = 0;
+	private static final int NEXT_POSTING_OFFSET = 8;
+	
+	private static final int EMPTY = 0;
+	private static final int NO_POSTING = -1;
+	
+	private static final int MAX_CAPACITY = Integer.highestOneBit(Integer.MAX_VALUE / SLOT_BYTES);
+	private static final int MAX_POSTINGS = Integer.MAX_VALUE / POSTING_BYTES;
+	
+	private final IntFunction<ByteBuffer> allocator;
+	private final StampedLock lock = new StampedLock();
+	
+	private volatile Table table;
+	
+	public CiphertextHashIndex() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Creates an index sized for the expected number of distinct ciphertexts.
+	 */
+	public CiphertextHashIndex(int expectedCiphertexts) {
+		this(expectedCiphertexts, ByteBuffer::allocateDirect);
+	}
+	
+	/**
+	 * Creates an index whose buffers are obtained from allocator, which must
+	 * return zero-filled buffers of the requested size.
+	 */
+	public CiphertextHashIndex(int expectedCiphertexts, IntFunction<ByteBuffer> allocator) {
+		this.allocator = allocator;
+		
+		// Keep load factor at most 0.5
+		int capacity = DEFAULT_CAPACITY;
+		while (capacity < MAX_CAPACITY && capacity < expectedCiphertexts * 2L) { capacity <<= 1; }
+		
+		this.table = new Table(allocator.apply(capacity * SLOT_BYTES), capacity,
+				allocator.apply(DEFAULT_KEY_CAPACITY), allocator.apply(DEFAULT_POSTING_CAPACITY * POSTING_BYTES));
+	}
+	
+	/**
+	 * Returns the number of entries (row IDs) in the index.
+	 */
+	public int size() {
+		return table.size;
+	}
+	
+	/**
+	 * Returns the number of distinct ciphertexts in the index.
+	 */
+	public int getCiphertextCount() {
+		return table.ciphertextCount;
+	}
+	
+	/**
+	 * Returns the number of off-heap bytes used by slots, ciphertexts and
+	 * postings.
+	 */
+	public long getMemoryUsage() {
+		Table t = table;
+		return (long) t.slots.capacity() + t.keys.capacity() + t.postings.capacity();
+	}
+	
+	public void put(byte[] ciphertext, long rowId) throws OpeException {
+		put(ciphertext, 0, ciphertext.length, rowId);
+	}
+	
+	public void put(byte[] ciphertext, int offset, int length, long rowId) throws OpeException {
+		long stamp = lock.writeLock();
+		try {
+			Table t = table;
+			int hash = hash(ciphertext, offset, length);
+			int slot = findSlot(t, hash, ciphertext, offset, length);
+			
+			if (t.slots.getInt(slot * SLOT_BYTES + HASH_OFFSET) != EMPTY) {
+				// Append to postings of an existing ciphertext
+				t = ensurePostingCapacity();
+				int base = slot * SLOT_BYTES;
+				int posting = addPosting(t, rowId);
+				
+				t.postings.putInt(t.slots.getInt(base + LAST_POSTING_OFFSET) * POSTING_BYTES + NEXT_POSTING_OFFSET, posting);
+				t.slots.putInt(base + LAST_POSTING_OFFSET, posting);
+				t.slots.putInt(base + POSTING_COUNT_OFFSET, t.slots.getInt(base + POSTING_COUNT_OFFSET) + 1);
+				
+			} else {
+				if ((t.ciphertextCount + 1) * 2L > t.capacity) {
+					resize();
+					t = table;
+					slot = findSlot(t, hash, ciphertext, offset, length);
+				}
+				
+				// Store ciphertext bytes and first posting
+				ensureKeyCapacity(length);
+				t = ensurePostingCapacity();
+				int keyOffset = t.keysLength;
+				for (int i = 0; i < length; i++) { t.keys.put(keyOffset + i, ciphertext[offset + i]); }
+				t.keysLength += length;
+				int posting = addPosting(t, rowId);
+				
+				// Fill slot, writing hash last
+				int base = slot * SLOT_BYTES;
+				t.slots.putInt(base + KEY_OFFSET_OFFSET, keyOffset);
+				t.slots.putInt(base + KEY_LENGTH_OFFSET, length);
+				t.slots.putInt(base + FIRST_POSTING_OFFSET, posting);
+				t.slots.putInt(base + LAST_POSTING_OFFSET, posting);
+				t.slots.putInt(base + POSTING_COUNT_OFFSET, 1);
+				t.slots.putInt(base + HASH_OFFSET, hash);
+				t.ciphertextCount++;
+			}
+			
+			t.size++;
+			
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * Returns the row IDs mapped to ciphertext, in insertion order.
+	 */
+	public long[] get(byte[] ciphertext) {
+		return get(ciphertext, 0, ciphertext.length);
+	}
+	
+	public long[] get(byte[] ciphertext, int offset, int length) {
+		// Try without locking first
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				long[] rowIds = find(ciphertext, offset, length);
+				if (lock.validate(stamp)) { return rowIds; }
+				
+			} catch (RuntimeException e) {
+				// Read inconsistent state while writing, retry with lock
+			}
+		}
+		
+		stamp = lock.readLock();
+		try {
+			return find(ciphertext, offset, length);
+			
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	public void get(byte[] ciphertext, LongConsumer consumer) {
+		for (long rowId : get(ciphertext)) { consumer.accept(rowId); }
+	}
+	
+	public boolean contains(byte[] ciphertext) {
+		return get(ciphertext).length > 0;
+	}
+	
+	private long[] find(byte[] ciphertext, int offset, int length) throws OpeException {
+		Table t = table;
+		int slot = findSlot(t, hash(ciphertext, offset, length), ciphertext, offset, length);
+		int base = slot * SLOT_BYTES;
+		if (t.slots.getInt(base + HASH_OFFSET) == EMPTY) { return new long[0]; }
+		
+		// Guard against inconsistent state while writing
+		int count = t.slots.getInt(base + POSTING_COUNT_OFFSET);
+		if (count < 0 || count > t.postingsLength) { throw new OpeException("Inconsistent index state."); }
+		
+		long[] rowIds = new long[count];
+		int posting = t.slots.getInt(base + FIRST_POSTING_OFFSET);
+		for (int i = 0; i < count; i++) {
+			rowIds[i] = t.postings.getLong(posting * POSTING_BYTES + ROW_ID_OFFSET);
+			posting = t.postings.getInt(posting * POSTING_BYTES + NEXT_POSTING_OFFSET);
+		}
+		
+		return rowIds;
+	}
+	
+	/**
+	 * Returns the slot holding ciphertext, or the empty slot where it belongs.
+	 */
+	private static int findSlot(Table t, int hash, byte[] ciphertext, int offset, int length) throws OpeException {
+		int mask = t.capacity - 1;
+		int slot = hash & mask;
+		
+		// Stop after visiting every slot, in case state is inconsistent
+		for (int i = 0; i < t.capacity; i++, slot = (slot + 1) & mask) {
+			int h = t.slots.getInt(slot * SLOT_BYTES + HASH_OFFSET);
+			if (h == EMPTY || (h == hash && keyEquals(t, slot, ciphertext, offset, length))) { return slot; }
+		}
+		
+		throw new OpeException("Inconsistent index state.");
+	}
+	
+	private static boolean keyEquals(Table t, int slot, byte[] ciphertext, int offset, int length) {
+		int base = slot * SLOT_BYTES;
+		if (t.slots.getInt(base + KEY_LENGTH_OFFSET) != length) { return false; }
+		
+		int keyOffset = t.slots.getInt(base + KEY_OFFSET_OFFSET);
+		for (int i = 0; i < length; i++) {
+			if (t.keys.get(keyOffset + i) != ciphertext[offset + i]) { return false; }
+		}
+		return true;
+	}
+	
+	private static int addPosting(Table t, long rowId) {
+		int posting = t.postingsLength++;
+		t.postings.putLong(posting * POSTING_BYTES + ROW_ID_OFFSET, rowId);
+		t.postings.putInt(posting * POSTING_BYTES + NEXT_POSTING_OFFSET, NO_POSTING);
+		return posting;
+	}
+	
+	private void resize() throws OpeException {
+		Table t = table;
+		if (t.capacity >= MAX_CAPACITY) {
+			throw new OpeException("Index cannot exceed " + (MAX_CAPACITY / 2) + " distinct ciphertexts.");
+		}
+		
+		int capacity = t.capacity * 2;
+		int mask = capacity - 1;
+		ByteBuffer slots = allocator.apply(capacity * SLOT_BYTES);
+		
+		// Rehash, moving slots as they are
+		for (int i = 0; i < t.capacity; i++) {
+			int base = i * SLOT_BYTES;
+			int hash = t.slots.getInt(base + HASH_OFFSET);
+			if (hash == EMPTY) { continue; }
+			
+			int slot = hash & mask;
+			while (slots.getInt(slot * SLOT_BYTES + HASH_OFFSET) != EMPTY) { slot = (slot + 1) & mask; }
+			
+			for (int j = 0; j < SLOT_BYTES; j++) {
+				slots.put(slot * SLOT_BYTES + j, t.slots.get(base + j));
+			}
+		}
+		
+		// Publish new table
+		table = new Table(slots, capacity, t);
+	}
+	
+	private Table ensureKeyCapacity(int length) throws OpeException {
+		Table t = table;
+		long required = t.keysLength + (long) length;
+		if (required <= t.keys.capacity()) { return t; }
+		
+		if (required > Integer.MAX_VALUE) {
+			throw new OpeException("Index ciphertexts cannot exceed " + Integer.MAX_VALUE + " bytes.");
+		}
+		
+		// Copy ciphertext bytes to a larger buffer, and publish new table
+		Table resized = new Table(t);
+		resized.keys = copy(t.keys, t.keysLength, (int) Math.min(Integer.MAX_VALUE, Math.max(required, t.keys.capacity() * 2L)));
+		table = resized;
+		return resized;
+	}
+	
+	private Table ensurePostingCapacity() throws OpeException {
+		Table t = table;
+		if ((t.postingsLength + 1L) * POSTING_BYTES <= t.postings.capacity()) { return t; }
+		
+		if (t.postingsLength >= MAX_POSTINGS) {
+			throw new OpeException("Index cannot exceed " + MAX_POSTINGS + " entries.");
+		}
+		
+		// Copy postings to a larger buffer, and publish new table
+		Table resized = new Table(t);
+		int postings = (int) Math.min(MAX_POSTINGS, t.postingsLength * 2L);
+		resized.postings = copy(t.postings, t.postingsLength * POSTING_BYTES, postings * POSTING_BYTES);
+		table = resized;
+		return resized;
+	}
+	
+	private ByteBuffer copy(ByteBuffer buffer, int length, int capacity) {
+		ByteBuffer copy = allocator.apply(capacity);
+		ByteBuffer source = buffer.duplicate();
+		source.position(0).limit(length);
+		copy.put(source);
+		return copy;
+	}
+	
+	/**
+	 * FNV-1a, followed by the MurmurHash3 finalizer to spread the bits.
+	 * Never returns EMPTY.
+	 */
+	static int hash(byte[] ciphertext, int offset, int length) {
+		int h = 0x811c9dc5;
+		for (int i = 0; i < length; i++) {
+			h ^= ciphertext[offset + i] & 0xff;
+			h *= 0x01000193;
+		}
+		
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		
+		return (h == EMPTY) ? 1 : h;
+	}
+	
+	private static class Table {
+		private final ByteBuffer slots;
+		private final int capacity;
+		
+		// Only changed while holding the write lock
+		private ByteBuffer keys;
+		private ByteBuffer postings;
+		private int keysLength;
+		private int postingsLength;
+		private int ciphertextCount;
+		private int size;
+		
+		private Table(ByteBuffer slots, int capacity, ByteBuffer keys, ByteBuffer postings) {
+			this.slots = slots;
+			this.capacity = capacity;
+			this.keys = keys;
+			this.postings = postings;
+		}
+		
+		private Table(Table t) {
+			this(t.slots, t.capacity, t);
+		}
+		
+		private Table(ByteBuffer slots, int capacity, Table t) {
+			this(slots, capacity, t.keys, t.postings);
+			this.keysLength = t.keysLength;
+			this.postingsLength = t.postingsLength;
+			this.ciphertextCount = t.ciphertextCount;
+			this.size = t.size;
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package ope.join;
+
+import ope.OpeException;
+import ope.util.CiphertextComparator;
+
+/**
+ * A ciphertext range with inclusive bounds and an opaque payload, used as
+ * the right side of a band join (a.x BETWEEN b.lo AND b.hi).
+ * 
+ * The lower bound of a band must not be above its upper bound. MopeKey
+ * ciphertexts are ordered modulo the key offset, so the ciphertext bounds of
+ * a valid plaintext range may be reversed. Such ranges are created with
+ * modular(), and wrap around past the largest ciphertext.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public final class Band {
+	
+	private final byte[] lower;
+	private final byte[] upper;
+	private final byte[] payload;
+	private final boolean wrapped;
+	
+	public Band(byte[] lower, byte[] upper, byte[] payload) throws OpeException {
+		this(lower, upper, payload, false);
+	}
+	
+	private Band(byte[] lower, byte[] upper, byte[] payload, boolean modular) throws OpeException {
+		this.lower = lower;
+		this.upper = upper;
+		this.payload = payload;
+		this.wrapped = CiphertextComparator.INSTANCE.compare(lower, upper) > 0;
+		
+		if (wrapped && !modular) {
+			throw new OpeException("Lower bound of band is above its upper bound.");
+		}
+	}
+	
+	/**
+	 * Creates a band of MopeKey ciphertexts. If the lower bound is above the
+	 * upper bound, the band wraps around: it matches ciphertexts at or above
+	 * the lower bound, or at or below the upper bound.
+	 */
+	public static Band modular(byte[] lower, byte[] upper, byte[] payload) {
+		return new Band(lower, upper, payload, true);
+	}
+	
+	public byte[] getLower() {
+		return lower;
+	}
+	
+	public byte[] getUpper() {
+		return upper;
+	}
+	
+	public byte[] getPayload() {
+		return payload;
+	}
+	
+	/**
+	 * Returns true if this is a modular band that wraps around.
+	 */
+	public boolean isWrapped() {
+		return wrapped;
+	}
+}
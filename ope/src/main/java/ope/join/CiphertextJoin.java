@@ -0,0 +1,207 @@
+package ope.join;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+
+import ope.OpeException;
+import ope.partition.CiphertextSketch;
+import ope.partition.RangePartitioner;
+import ope.sort.Entry;
+import ope.util.CiphertextComparator;
+
+/**
+ * Joins on ciphertexts encrypted with the same key, without decrypting them.
+ * 
+ * Both joins rely on ciphertexts having the same order as their plaintexts
+ * (as with FastOpeKey and MopeKey), and on equal plaintexts having equal
+ * ciphertexts. Inputs are split into ciphertext ranges using split points
+ * sampled by a CiphertextSketch, and the partitions are joined in parallel.
+ * 
+ * MopeKey ciphertexts are ordered modulo the key offset, so a band may wrap
+ * around past the largest ciphertext. Such bands are created explicitly
+ * with Band.modular().
+ * 
+ * Matching pairs are passed to a consumer, which may be called concurrently
+ * from several threads, and in no particular order across partitions.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public class CiphertextJoin {
+	
+	private static final Comparator<Entry> ENTRY_ORDER =
+			(e1, e2) -> CiphertextComparator.INSTANCE.compare(e1.getCiphertext(), e2.getCiphertext());
+	
+	private int partitions = ForkJoinPool.getCommonPoolParallelism() * 4;
+	
+	public int getPartitions() {
+		return partitions;
+	}
+	
+	/**
+	 * Sets the number of ciphertext ranges joined in parallel. Skewed inputs
+	 * may result in fewer partitions.
+	 */
+	public void setPartitions(int partitions) throws OpeException {
+		if (partitions < 1) { throw new OpeException("Number of partitions must be positive."); }
+		this.partitions = partitions;
+	}
+	
+	/**
+	 * Sort-merge equi-join: passes every pair of left and right entries with
+	 * equal ciphertexts to consumer.
+	 */
+	public void equiJoin(List<Entry> left, List<Entry> right, BiConsumer<? super Entry, ? super Entry> consumer) {
+		RangePartitioner partitioner = createPartitioner(left, right);
+		
+		Entry[][] leftPartitions = split(left, partitioner);
+		Entry[][] rightPartitions = split(right, partitioner);
+		
+		IntStream.range(0, partitioner.getPartitionCount()).parallel()
+				.forEach(p -> mergeJoin(leftPartitions[p], rightPartitions[p], consumer));
+	}
+	
+	/**
+	 * Band join: passes every pair of point and band where the point
+	 * ciphertext lies between the band bounds (inclusive) to consumer.
+	 * Bands spanning several partitions are joined in each of them.
+	 */
+	public void bandJoin(List<Entry> points, List<Band> bands, BiConsumer<? super Entry, ? super Band> consumer) {
+		RangePartitioner partitioner = createPartitioner(points, null);
+		
+		Entry[][] pointPartitions = split(points, partitioner);
+		Band[][] bandPartitions = splitBands(bands, partitioner);
+		
+		IntStream.range(0, partitioner.getPartitionCount()).parallel()
+				.forEach(p -> bandJoin(pointPartitions[p], bandPartitions[p], consumer));
+	}
+	
+	private RangePartitioner createPartitioner(List<Entry> left, List<Entry> right) {
+		if (partitions == 1) { return new RangePartitioner(new byte[0][]); }
+		
+		CiphertextSketch sketch = sample(left);
+		if (right != null) { sketch.merge(sample(right)); }
+		return new RangePartitioner(sketch, partitions);
+	}
+	
+	private static CiphertextSketch sample(List<Entry> entries) {
+		return entries.parallelStream().collect(CiphertextSketch::new,
+				(sketch, entry) -> sketch.add(entry.getCiphertext()), CiphertextSketch::merge);
+	}
+	
+	private static Entry[][] split(List<Entry> entries, RangePartitioner partitioner) {
+		int[] ids = IntStream.range(0, entries.size()).parallel()
+				.map(i -> partitioner.partition(entries.get(i).getCiphertext()))
+				.toArray();
+		
+		// Counting sort into partitions
+		int[] counts = new int[partitioner.getPartitionCount()];
+		for (int id : ids) { counts[id]++; }
+		
+		Entry[][] result = new Entry[counts.length][];
+		for (int p = 0; p < counts.length; p++) { result[p] = new Entry[counts[p]]; }
+		
+		Arrays.fill(counts, 0);
+		for (int i = 0; i < ids.length; i++) { result[ids[i]][counts[ids[i]]++] = entries.get(i); }
+		return result;
+	}
+	
+	private static Band[][] splitBands(List<Band> bands, RangePartitioner partitioner) {
+		List<List<Band>> lists = new ArrayList<>();
+		for (int p = 0; p < partitioner.getPartitionCount(); p++) { lists.add(new ArrayList<>()); }
+		
+		for (Band band : bands) {
+			int first = partitioner.partition(band.getLower());
+			int last = partitioner.partition(band.getUpper());
+			
+			if (!band.isWrapped()) {
+				for (int p = first; p <= last; p++) { lists.get(p).add(band); }
+				
+			} else {
+				// Partitions from the lower bound to the end, and from the start to the upper bound
+				for (int p = 0; p < lists.size(); p++) {
+					if (p <= last || p >= first) { lists.get(p).add(band); }
+				}
+			}
+		}
+		
+		Band[][] result = new Band[lists.size()][];
+		for (int p = 0; p < result.length; p++) { result[p] = lists.get(p).toArray(new Band[0]); }
+		return result;
+	}
+	
+	private static void mergeJoin(Entry[] left, Entry[] right, BiConsumer<? super Entry, ? super Entry> consumer) {
+		Arrays.sort(left, ENTRY_ORDER);
+		Arrays.sort(right, ENTRY_ORDER);
+		
+		int i = 0;
+		int j = 0;
+		while (i < left.length && j < right.length) {
+			int result = ENTRY_ORDER.compare(left[i], right[j]);
+			
+			if (result < 0) {
+				i++;
+				
+			} else if (result > 0) {
+				j++;
+				
+			} else {
+				// Find groups of equal ciphertexts on both sides
+				int leftEnd = i + 1;
+				while (leftEnd < left.length && ENTRY_ORDER.compare(left[i], left[leftEnd]) == 0) { leftEnd++; }
+				int rightEnd = j + 1;
+				while (rightEnd < right.length && ENTRY_ORDER.compare(right[j], right[rightEnd]) == 0) { rightEnd++; }
+				
+				for (int l = i; l < leftEnd; l++) {
+					for (int r = j; r < rightEnd; r++) { consumer.accept(left[l], right[r]); }
+				}
+				
+				i = leftEnd;
+				j = rightEnd;
+			}
+		}
+	}
+	
+	private static void bandJoin(Entry[] points, Band[] bands, BiConsumer<? super Entry, ? super Band> consumer) {
+		Arrays.sort(points, ENTRY_ORDER);
+		
+		for (Band band : bands) {
+			byte[] upper = band.getUpper();
+			
+			if (band.isWrapped()) {
+				for (int i = lowerBound(points, band.getLower()); i < points.length; i++) { consumer.accept(points[i], band); }
+				scan(points, 0, upper, band, consumer);
+				
+			} else {
+				scan(points, lowerBound(points, band.getLower()), upper, band, consumer);
+			}
+		}
+	}
+	
+	private static void scan(Entry[] points, int start, byte[] upper, Band band, BiConsumer<? super Entry, ? super Band> consumer) {
+		for (int i = start; i < points.length; i++) {
+			if (CiphertextComparator.INSTANCE.compare(points[i].getCiphertext(), upper) > 0) { break; }
+			consumer.accept(points[i], band);
+		}
+	}
+	
+	private static int lowerBound(Entry[] sorted, byte[] ciphertext) {
+		int low = 0;
+		int high = sorted.length;
+		
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (CiphertextComparator.INSTANCE.compare(sorted[mid].getCiphertext(), ciphertext) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		
+		return low;
+	}
+}
@@ -2,11 +2,12 @@ package ope.mope;
 
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
-import java.security.SecureRandom;
 
 import ope.Cipher;
 import ope.Key;
 import ope.OpeException;
+import ope.util.KeyDerivation;
+import ope.util.ThreadLocalSecureRandom;
 
 /**
  * Cipher implementation of Boldyreva et al's Modular Order-Preserving Encryption scheme.
@@ -27,8 +28,6 @@ public class MopeCipher implements Cipher {
 
 	private static final int DEFAULT_PLAINTEXT_BYTES = 8;
 	
-	private final SecureRandom rnd = new SecureRandom();
-	
 	private final Cipher cipher;
 	
 	private int plaintextBytes;
@@ -58,7 +57,7 @@ public class MopeCipher implements Cipher {
 	public Key generateKey() throws OpeException {
 		// Generate offset
 		byte[] offsetBytes = new byte[plaintextBytes];
-		rnd.nextBytes(offsetBytes);
+		ThreadLocalSecureRandom.current().nextBytes(offsetBytes);
 		BigInteger offset = new BigInteger(offsetBytes);
 		
 		// Generate key
@@ -68,6 +67,28 @@ public class MopeCipher implements Cipher {
 		return new MopeKey(key, plaintextBytes, offset);
 	}
 
+	public byte[] generateEncodedKey() throws OpeException {
+		// Generate offset
+		byte[] offsetBytes = new byte[plaintextBytes];
+		ThreadLocalSecureRandom.current().nextBytes(offsetBytes);
+		
+		// Generate key, without building either key
+		return MopeKey.encode(plaintextBytes, offsetBytes, cipher.generateEncodedKey());
+	}
+
+	public Key deriveKey(KeyDerivation kdf) throws OpeException {
+		// Derive offset
+		byte[] offsetBytes = new byte[plaintextBytes];
+		kdf.nextBytes(offsetBytes);
+		BigInteger offset = new BigInteger(offsetBytes);
+		
+		// Derive key from the rest of the stream
+		Key key = cipher.deriveKey(kdf);
+		
+		// Derive MOPE key
+		return new MopeKey(key, plaintextBytes, offset);
+	}
+
 	public Key decodeKey(byte[] bytes) throws OpeException {
 		ByteBuffer buffer = ByteBuffer.wrap(bytes);
 		
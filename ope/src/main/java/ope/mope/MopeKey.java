@@ -46,16 +46,16 @@ public class MopeKey implements Key {
 	}
 	
 	public byte[] encodeKey() throws OpeException {
-		// Encode key
-		byte[] keyBytes = key.encodeKey();
-		
+		return encode(plaintextBytes, offset.toByteArray(), key.encodeKey());
+	}
+	
+	static byte[] encode(int plaintextBytes, byte[] offsetBytes, byte[] keyBytes) {
 		// Calculate required size and prepare buffer
 		int size = Integer.BYTES + plaintextBytes + keyBytes.length;
 		ByteBuffer buffer = ByteBuffer.allocate(size);
 		
 		// Write plaintext size and offset
 		buffer.putInt(plaintextBytes);
-		byte[] offsetBytes = offset.toByteArray();
 		if (offsetBytes.length >= plaintextBytes) {
 			buffer.put(offsetBytes, offsetBytes.length - plaintextBytes, plaintextBytes);
 			
@@ -71,7 +71,26 @@ public class MopeKey implements Key {
 		return buffer.array();
 	}
 
+	public int getPlaintextBytes() {
+		return plaintextBytes;
+	}
+	
 	public byte[] encrypt(byte[] plaintext) throws OpeException {
+		// Encrypt
+		return key.encrypt(addOffset(plaintext));
+	}
+	
+	public void encrypt(byte[] plaintext, ByteBuffer ciphertext) throws OpeException {
+		// Encrypt into buffer
+		key.encrypt(addOffset(plaintext), ciphertext);
+	}
+	
+	public int getCiphertextLength(int plaintextLength) {
+		// Plaintext is always extended to plaintextBytes
+		return key.getCiphertextLength(plaintextBytes);
+	}
+	
+	private byte[] addOffset(byte[] plaintext) throws OpeException {
 		// Check plaintext size
 		if (plaintext.length > plaintextBytes) {
 			throw new OpeException("Plaintext cannot exceed " + plaintextBytes + " bytes in size.");
@@ -101,13 +120,29 @@ public class MopeKey implements Key {
 			}
 		}
 		
-		// Encrypt
-		return key.encrypt(plaintext2);
+		return plaintext2;
 	}
 
 	public byte[] decrypt(byte[] ciphertext) throws OpeException {
 		// Decrypt
-		byte[] plaintext2 = key.decrypt(ciphertext);
+		return removeOffset(key.decrypt(ciphertext));
+	}
+
+	public byte[][] decrypt(byte[][] ciphertexts) throws OpeException {
+		// Decrypt batch using the underlying key
+		byte[][] plaintexts = key.decrypt(ciphertexts);
+		for (int i = 0; i < plaintexts.length; i++) { plaintexts[i] = removeOffset(plaintexts[i]); }
+		return plaintexts;
+	}
+	
+	public byte[][] decrypt(ByteBuffer[] ciphertexts) throws OpeException {
+		// Decrypt batch in place using the underlying key
+		byte[][] plaintexts = key.decrypt(ciphertexts);
+		for (int i = 0; i < plaintexts.length; i++) { plaintexts[i] = removeOffset(plaintexts[i]); }
+		return plaintexts;
+	}
+
+	private byte[] removeOffset(byte[] plaintext2) throws OpeException {
 		if (plaintext2.length > plaintextBytes) {
 			throw new OpeException("Plaintext cannot exceed " + plaintextBytes + " bytes in size.");
 		}
@@ -0,0 +1,239 @@
+package ope.partition;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import ope.OpeException;
+import ope.util.CiphertextComparator;
+
+/**
+ * Streaming quantile sketch over ciphertexts.
+ * 
+ * The sketch keeps a uniform random sample of bounded size using bottom-k
+ * sampling: every ciphertext added gets a random priority, and only the
+ * ciphertexts with the smallest priorities are kept. Sketches built on
+ * different nodes can therefore be merged into exactly the sketch of the
+ * combined stream, and quantiles of the sample estimate quantiles of the
+ * data, without any decryption.
+ * 
+ * Quantiles are taken in ciphertext order, so MOPE ciphertexts, whose order
+ * is a rotation of plaintext order, are split just as evenly.
+ * 
+ * This class is not thread-safe. Use one sketch per thread, and merge them.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public class CiphertextSketch {
+	
+	private static final int DEFAULT_CAPACITY = 4096;
+	private static final int MAX_CAPACITY = 1 << 24;
+	
+	// Priority and ciphertext length of each sampled ciphertext
+	private static final int ENTRY_HEADER_BYTES = Long.BYTES + Integer.BYTES;
+	
+	private final int capacity;
+	private final Random random;
+	
+	// Max-heap on priority, so that the largest priority is evicted first
+	private final PriorityQueue<Entry> sample;
+	
+	private long count = 0;
+	
+	public CiphertextSketch() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	public CiphertextSketch(int capacity) {
+		this(capacity, null);
+	}
+	
+	/**
+	 * Creates a sketch keeping up to capacity ciphertexts (at most 2^24), or
+	 * a default number if capacity is not positive. Priorities are drawn
+	 * from random if not null.
+	 */
+	public CiphertextSketch(int capacity, Random random) throws OpeException {
+		if (capacity > MAX_CAPACITY) { throw new OpeException("Sketch capacity cannot exceed " + MAX_CAPACITY + "."); }
+		
+		this.capacity = capacity > 0 ? capacity : DEFAULT_CAPACITY;
+		this.random = random;
+		this.sample = new PriorityQueue<>(Math.min(this.capacity, DEFAULT_CAPACITY), (e1, e2) -> Long.compare(e2.priority, e1.priority));
+	}
+	
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Returns the number of ciphertexts added to this sketch, including
+	 * ciphertexts added to merged sketches.
+	 */
+	public long getCount() {
+		return count;
+	}
+	
+	public int getSampleSize() {
+		return sample.size();
+	}
+	
+	public void add(byte[] ciphertext) {
+		add(ciphertext, 0, ciphertext.length);
+	}
+	
+	public void add(byte[] ciphertext, int offset, int length) {
+		count++;
+		
+		// Priorities are non-negative so that they can be compared as signed longs
+		long priority = nextLong() & 0x7fffffffffffffffl;
+		
+		// Copy ciphertext only if it is kept
+		if (sample.size() < capacity || priority < sample.peek().priority) {
+			offer(new Entry(priority, Arrays.copyOfRange(ciphertext, offset, offset + length)));
+		}
+	}
+	
+	/**
+	 * Merges another sketch into this one.
+	 * The other sketch is not modified. Merging a sketch into itself has no
+	 * effect, since its sample already holds its own ciphertexts.
+	 */
+	public void merge(CiphertextSketch other) {
+		if (other == this) { return; }
+		
+		count += other.count;
+		for (Entry entry : other.sample) {
+			if (sample.size() < capacity || entry.priority < sample.peek().priority) {
+				offer(entry);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the estimated q-quantile of the ciphertexts added, where q is
+	 * between 0 and 1, or null if the sketch is empty.
+	 */
+	public byte[] quantile(double q) {
+		byte[][] sorted = sortedSample();
+		if (sorted.length == 0) { return null; }
+		
+		int index = (int) Math.min(sorted.length - 1, Math.max(0, Math.floor(q * sorted.length)));
+		return sorted[index];
+	}
+	
+	/**
+	 * Returns up to partitions - 1 distinct split points, in ascending order,
+	 * that divide the ciphertexts added into partitions of roughly equal size.
+	 * Fewer split points are returned if the sample has too few distinct values.
+	 */
+	public byte[][] splitPoints(int partitions) {
+		byte[][] sorted = sortedSample();
+		List<byte[]> splitPoints = new ArrayList<>();
+		
+		for (int i = 1; i < partitions && sorted.length > 0; i++) {
+			byte[] splitPoint = sorted[(int) ((long) i * sorted.length / partitions)];
+			
+			// Split points must be strictly ascending
+			if (splitPoints.isEmpty()
+					|| CiphertextComparator.INSTANCE.compare(splitPoints.get(splitPoints.size() - 1), splitPoint) < 0) {
+				splitPoints.add(splitPoint);
+			}
+		}
+		
+		return splitPoints.toArray(new byte[splitPoints.size()][]);
+	}
+	
+	/**
+	 * Encodes this sketch to binary format, so that it can be sent to
+	 * another node and merged there.
+	 */
+	public byte[] encode() {
+		int size = Integer.BYTES + Long.BYTES + Integer.BYTES;
+		for (Entry entry : sample) { size += ENTRY_HEADER_BYTES + entry.ciphertext.length; }
+		
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(capacity);
+		buffer.putLong(count);
+		buffer.putInt(sample.size());
+		for (Entry entry : sample) {
+			buffer.putLong(entry.priority);
+			buffer.putInt(entry.ciphertext.length);
+			buffer.put(entry.ciphertext);
+		}
+		
+		return buffer.array();
+	}
+	
+	/**
+	 * Decodes a sketch encoded by encode(). Sizes are checked against the
+	 * bytes remaining before anything is allocated, so that malformed input
+	 * causes an OpeException rather than an OutOfMemoryError.
+	 */
+	public static CiphertextSketch decode(byte[] bytes) throws OpeException {
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			
+			int capacity = buffer.getInt();
+			long count = buffer.getLong();
+			int sampleSize = buffer.getInt();
+			
+			if (capacity <= 0 || capacity > MAX_CAPACITY) { throw new OpeException("Invalid sketch capacity."); }
+			if (sampleSize < 0 || sampleSize > capacity || sampleSize > count
+					|| sampleSize > buffer.remaining() / ENTRY_HEADER_BYTES) {
+				throw new OpeException("Invalid sketch sample size.");
+			}
+			
+			CiphertextSketch sketch = new CiphertextSketch(capacity);
+			sketch.count = count;
+			
+			for (int i = 0; i < sampleSize; i++) {
+				long priority = buffer.getLong();
+				int length = buffer.getInt();
+				if (priority < 0 || length < 0 || length > buffer.remaining()) { throw new OpeException("Invalid sketch entry."); }
+				
+				byte[] ciphertext = new byte[length];
+				buffer.get(ciphertext);
+				sketch.offer(new Entry(priority, ciphertext));
+			}
+			
+			if (buffer.hasRemaining()) { throw new OpeException("Invalid sketch length."); }
+			return sketch;
+			
+		} catch (BufferUnderflowException e) {
+			throw new OpeException("Invalid sketch.", e);
+		}
+	}
+	
+	private void offer(Entry entry) {
+		sample.add(entry);
+		if (sample.size() > capacity) { sample.poll(); }
+	}
+	
+	private byte[][] sortedSample() {
+		byte[][] sorted = new byte[sample.size()][];
+		int i = 0;
+		for (Entry entry : sample) { sorted[i++] = entry.ciphertext; }
+		
+		Arrays.sort(sorted, CiphertextComparator.INSTANCE);
+		return sorted;
+	}
+	
+	private long nextLong() {
+		return (random != null) ? random.nextLong() : ThreadLocalRandom.current().nextLong();
+	}
+	
+	private static class Entry {
+		private final long priority;
+		private final byte[] ciphertext;
+		
+		private Entry(long priority, byte[] ciphertext) {
+			this.priority = priority;
+			this.ciphertext = ciphertext;
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package ope.partition;
+
+import ope.OpeException;
+import ope.util.CiphertextComparator;
+
+/**
+ * Routes ciphertexts to partitions by ciphertext range.
+ * 
+ * Given n ascending split points, there are n + 1 partitions. Partition 0
+ * holds ciphertexts below the first split point, and partition i holds
+ * ciphertexts from split point i - 1 (inclusive) to split point i (exclusive).
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public class RangePartitioner {
+	
+	private final byte[][] splitPoints;
+	
+	public RangePartitioner(byte[][] splitPoints) throws OpeException {
+		for (int i = 1; i < splitPoints.length; i++) {
+			if (CiphertextComparator.INSTANCE.compare(splitPoints[i - 1], splitPoints[i]) >= 0) {
+				throw new OpeException("Split points must be strictly ascending.");
+			}
+		}
+		
+		this.splitPoints = splitPoints.clone();
+	}
+	
+	/**
+	 * Creates a partitioner with balanced split points estimated by a sketch.
+	 */
+	public RangePartitioner(CiphertextSketch sketch, int partitions) throws OpeException {
+		this(sketch.splitPoints(partitions));
+	}
+	
+	public int getPartitionCount() {
+		return splitPoints.length + 1;
+	}
+	
+	public byte[][] getSplitPoints() {
+		return splitPoints.clone();
+	}
+	
+	public int partition(byte[] ciphertext) {
+		return partition(ciphertext, 0, ciphertext.length);
+	}
+	
+	public int partition(byte[] ciphertext, int offset, int length) {
+		// Count split points less than or equal to ciphertext
+		int low = 0;
+		int high = splitPoints.length;
+		
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			byte[] splitPoint = splitPoints[mid];
+			
+			if (CiphertextComparator.compare(splitPoint, 0, splitPoint.length, ciphertext, offset, length) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		
+		return low;
+	}
+}
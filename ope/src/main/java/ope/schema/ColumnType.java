@@ -0,0 +1,97 @@
+package ope.schema;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import ope.OpeException;
+import ope.util.Encoder;
+
+/**
+ * Types of columns in an OpeSchema, with their OPE-friendly encodings.
+ * Fixed-size types have a plaintext size in bytes, which is also the MOPE
+ * width needed to encrypt them. Strings and big numbers have variable size.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public enum ColumnType {
+	BOOLEAN(1),
+	BYTE(1),
+	SHORT(2),
+	INT(4),
+	LONG(8),
+	FLOAT(4),
+	DOUBLE(8),
+	CHAR(2),
+	STRING(-1),
+	BIG_INTEGER(-1),
+	BIG_DECIMAL(-1),
+	INSTANT(Encoder.INSTANT_SIZE),
+	LOCAL_DATE(Encoder.LOCAL_DATE_SIZE),
+	LOCAL_DATE_TIME(Encoder.LOCAL_DATE_TIME_SIZE),
+	UUID(Encoder.UUID_SIZE);
+	
+	private final int size;
+	
+	private ColumnType(int size) {
+		this.size = size;
+	}
+	
+	/**
+	 * Returns plaintext size in bytes, or -1 for variable-size types.
+	 */
+	public int getSize() {
+		return size;
+	}
+	
+	public boolean isFixedSize() {
+		return size > 0;
+	}
+	
+	public byte[] encode(Object value) throws OpeException {
+		try {
+			switch (this) {
+			case BOOLEAN: return Encoder.encodeBoolean((Boolean) value);
+			case BYTE: return Encoder.encodeByte((Byte) value);
+			case SHORT: return Encoder.encodeShort((Short) value);
+			case INT: return Encoder.encodeInt((Integer) value);
+			case LONG: return Encoder.encodeLong((Long) value);
+			case FLOAT: return Encoder.encodeFloat((Float) value);
+			case DOUBLE: return Encoder.encodeDouble((Double) value);
+			case CHAR: return Encoder.encodeChar((Character) value);
+			case BIG_INTEGER: return Encoder.encodeBigInteger((BigInteger) value);
+			case BIG_DECIMAL: return Encoder.encodeBigDecimal((BigDecimal) value);
+			case INSTANT: return Encoder.encodeInstant((Instant) value);
+			case LOCAL_DATE: return Encoder.encodeLocalDate((LocalDate) value);
+			case LOCAL_DATE_TIME: return Encoder.encodeLocalDateTime((LocalDateTime) value);
+			case UUID: return Encoder.encodeUUID((java.util.UUID) value);
+			default: return Encoder.encodeString((String) value);
+			}
+			
+		} catch (ClassCastException e) {
+			throw new OpeException("Invalid value for " + this + " column: " + value.getClass().getName() + ".", e);
+		}
+	}
+	
+	public Object decode(byte[] value) throws OpeException {
+		switch (this) {
+		case BOOLEAN: return Encoder.decodeBoolean(value);
+		case BYTE: return Encoder.decodeByte(value);
+		case SHORT: return Encoder.decodeShort(value);
+		case INT: return Encoder.decodeInt(value);
+		case LONG: return Encoder.decodeLong(value);
+		case FLOAT: return Encoder.decodeFloat(value);
+		case DOUBLE: return Encoder.decodeDouble(value);
+		case CHAR: return Encoder.decodeChar(value);
+		case BIG_INTEGER: return Encoder.decodeBigInteger(value);
+		case BIG_DECIMAL: return Encoder.decodeBigDecimal(value);
+		case INSTANT: return Encoder.decodeInstant(value);
+		case LOCAL_DATE: return Encoder.decodeLocalDate(value);
+		case LOCAL_DATE_TIME: return Encoder.decodeLocalDateTime(value);
+		case UUID: return Encoder.decodeUUID(value);
+		default: return Encoder.decodeString(value);
+		}
+	}
+}
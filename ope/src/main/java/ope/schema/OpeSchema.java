@@ -0,0 +1,83 @@
+package ope.schema;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ope.Cipher;
+import ope.Key;
+import ope.OpeException;
+import ope.mope.MopeCipher;
+import ope.mope.MopeKey;
+
+/**
+ * Describes the columns of a row: their names, types and keys.
+ * A schema is compiled into a RowCodec, which encrypts whole rows at once.
+ * 
+ * MOPE keys must have the same width as the plaintext size of their column
+ * type, which createMopeCipher takes care of.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public class OpeSchema {
+	
+	private final List<String> names = new ArrayList<>();
+	private final List<ColumnType> types = new ArrayList<>();
+	private final List<Key> keys = new ArrayList<>();
+	
+	/**
+	 * Creates a MOPE cipher whose width matches the given column type, so
+	 * that, for example, a short is not padded to 8 bytes.
+	 */
+	public static MopeCipher createMopeCipher(Cipher cipher, ColumnType type) throws OpeException {
+		if (!type.isFixedSize()) {
+			throw new OpeException("MOPE is not supported for " + type + " columns.");
+		}
+		return new MopeCipher(cipher, type.getSize());
+	}
+	
+	public void addColumn(String name, ColumnType type, Key key) throws OpeException {
+		if (names.contains(name)) {
+			throw new OpeException("Duplicate column: " + name + ".");
+		}
+		
+		if (key instanceof MopeKey) {
+			int width = ((MopeKey) key).getPlaintextBytes();
+			if (width != type.getSize()) {
+				throw new OpeException("MOPE width of column " + name + " is " + width
+						+ " bytes, but " + type + " requires " + type.getSize() + ".");
+			}
+		}
+		
+		names.add(name);
+		types.add(type);
+		keys.add(key);
+	}
+	
+	public int getColumnCount() {
+		return names.size();
+	}
+	
+	public String getColumnName(int column) {
+		return names.get(column);
+	}
+	
+	public ColumnType getColumnType(int column) {
+		return types.get(column);
+	}
+	
+	public Key getKey(int column) {
+		return keys.get(column);
+	}
+	
+	public int indexOf(String name) {
+		return names.indexOf(name);
+	}
+	
+	/**
+	 * Compiles this schema into a reusable row codec.
+	 * Columns added later do not affect the codec.
+	 */
+	public RowCodec compile() {
+		return new RowCodec(types.toArray(new ColumnType[types.size()]), keys.toArray(new Key[keys.size()]));
+	}
+}
@@ -0,0 +1,197 @@
+package ope.schema;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import ope.Key;
+import ope.OpeException;
+
+/**
+ * Encrypts and decrypts whole rows, as described by an OpeSchema, to and
+ * from a single contiguous buffer.
+ * 
+ * Row format:
+ * 
+ *   int[columns] end offset of each column's ciphertext, relative to data
+ *   byte[]       data: ciphertexts of all columns, one after the other
+ * 
+ * A null value is stored as an empty ciphertext. Rows can be encrypted into
+ * a new array or appended to a caller's buffer, and are read in place from
+ * either.
+ * 
+ * Row codecs are immutable and can be shared between threads.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public class RowCodec {
+	
+	private final ColumnType[] types;
+	private final Key[] keys;
+	
+	// Ciphertext length of fixed-size columns, or -1
+	private final int[] ciphertextLengths;
+	
+	private final int headerSize;
+	
+	RowCodec(ColumnType[] types, Key[] keys) {
+		this.types = types;
+		this.keys = keys;
+		
+		this.ciphertextLengths = new int[types.length];
+		for (int i = 0; i < types.length; i++) {
+			ciphertextLengths[i] = types[i].isFixedSize() ? keys[i].getCiphertextLength(types[i].getSize()) : -1;
+		}
+		
+		this.headerSize = types.length * Integer.BYTES;
+	}
+	
+	public int getColumnCount() {
+		return types.length;
+	}
+	
+	public byte[] encrypt(Object... values) throws OpeException {
+		checkColumnCount(values);
+		
+		// Calculate row size, encoding only variable-size values
+		byte[][] plaintexts = null;
+		int size = headerSize;
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] == null) { continue; }
+			
+			if (ciphertextLengths[i] >= 0) {
+				size += ciphertextLengths[i];
+				
+			} else {
+				if (plaintexts == null) { plaintexts = new byte[values.length][]; }
+				plaintexts[i] = types[i].encode(values[i]);
+				size += keys[i].getCiphertextLength(plaintexts[i].length);
+			}
+		}
+		
+		// Encrypt all columns directly into the row
+		byte[] row = new byte[size];
+		write(ByteBuffer.wrap(row), values, plaintexts);
+		return row;
+	}
+	
+	/**
+	 * Encrypts a row into buffer, starting at its position, and advances the
+	 * position past the row. This allows many rows to be written to one
+	 * buffer (e.g. a page or a memory-mapped file) without allocating a row
+	 * array each.
+	 * 
+	 * If the buffer does not have enough space remaining, an OpeException is
+	 * thrown and the position is left unchanged.
+	 */
+	public void encrypt(ByteBuffer buffer, Object... values) throws OpeException {
+		checkColumnCount(values);
+		
+		if (buffer.remaining() < headerSize) {
+			throw new OpeException("Not enough space remaining in buffer for row.");
+		}
+		
+		int start = buffer.position();
+		try {
+			write(buffer, values, null);
+			
+		} catch (BufferOverflowException e) {
+			buffer.position(start);
+			throw new OpeException("Not enough space remaining in buffer for row.", e);
+		}
+	}
+	
+	private void checkColumnCount(Object[] values) throws OpeException {
+		if (values.length != types.length) {
+			throw new OpeException("Expecting " + types.length + " values, found " + values.length + ".");
+		}
+	}
+	
+	private void write(ByteBuffer buffer, Object[] values, byte[][] plaintexts) throws OpeException {
+		int start = buffer.position();
+		int dataStart = start + headerSize;
+		buffer.position(dataStart);
+		
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				byte[] plaintext = (plaintexts != null && plaintexts[i] != null) ? plaintexts[i] : types[i].encode(values[i]);
+				keys[i].encrypt(plaintext, buffer);
+			}
+			buffer.putInt(start + i * Integer.BYTES, buffer.position() - dataStart);
+		}
+	}
+	
+	public Object[] decrypt(byte[] row) throws OpeException {
+		return decrypt(ByteBuffer.wrap(row));
+	}
+	
+	/**
+	 * Decrypts the row starting at the buffer's position. The position is not
+	 * changed.
+	 */
+	public Object[] decrypt(ByteBuffer row) throws OpeException {
+		Object[] values = new Object[types.length];
+		for (int i = 0; i < types.length; i++) { values[i] = decrypt(row, i); }
+		return values;
+	}
+	
+	public Object decrypt(byte[] row, int column) throws OpeException {
+		return decrypt(ByteBuffer.wrap(row), column);
+	}
+	
+	public Object decrypt(ByteBuffer row, int column) throws OpeException {
+		byte[] ciphertext = getCiphertext(row, column);
+		return (ciphertext.length == 0) ? null : types[column].decode(keys[column].decrypt(ciphertext));
+	}
+	
+	public byte[] getCiphertext(byte[] row, int column) {
+		return getCiphertext(ByteBuffer.wrap(row), column);
+	}
+	
+	public byte[] getCiphertext(ByteBuffer row, int column) {
+		int offset = getOffset(row, column);
+		int length = getLength(row, column);
+		if (row.hasArray()) {
+			int arrayOffset = row.arrayOffset() + offset;
+			return Arrays.copyOfRange(row.array(), arrayOffset, arrayOffset + length);
+		}
+		
+		byte[] ciphertext = new byte[length];
+		for (int i = 0; i < length; i++) { ciphertext[i] = row.get(offset + i); }
+		return ciphertext;
+	}
+	
+	/**
+	 * Returns the offset of a column's ciphertext in the row, so that it can
+	 * be compared or indexed without copying.
+	 */
+	public int getOffset(byte[] row, int column) {
+		return getOffset(ByteBuffer.wrap(row), column);
+	}
+	
+	/**
+	 * Returns the index of a column's ciphertext in the buffer, for the row
+	 * starting at the buffer's position.
+	 */
+	public int getOffset(ByteBuffer row, int column) {
+		int start = row.position();
+		return start + headerSize + ((column == 0) ? 0 : row.getInt(start + (column - 1) * Integer.BYTES));
+	}
+	
+	public int getLength(byte[] row, int column) {
+		return getLength(ByteBuffer.wrap(row), column);
+	}
+	
+	public int getLength(ByteBuffer row, int column) {
+		int start = row.position();
+		int end = row.getInt(start + column * Integer.BYTES);
+		return end - ((column == 0) ? 0 : row.getInt(start + (column - 1) * Integer.BYTES));
+	}
+	
+	/**
+	 * Returns the total length of the row starting at the buffer's position.
+	 */
+	public int getRowLength(ByteBuffer row) {
+		return headerSize + ((types.length == 0) ? 0 : row.getInt(row.position() + (types.length - 1) * Integer.BYTES));
+	}
+}
@@ -0,0 +1,248 @@
+package ope.sort;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import ope.Key;
+import ope.OpeException;
+import ope.util.CiphertextComparator;
+
+/**
+ * Encrypts records and sorts them by ciphertext, using temporary files when
+ * they do not fit in memory (external merge sort).
+ * 
+ * Records are buffered until they reach the run size. Each run is then
+ * encrypted in parallel, sorted and spilled to a temporary file. sort()
+ * merges all runs with a loser tree, producing entries in ciphertext order.
+ * If there are more runs than the maximum fan-in, adjacent runs are merged
+ * into longer runs first. Records with equal ciphertexts keep the order in
+ * which they were added.
+ * 
+ * Usage:
+ * 
+ *   try (BulkLoader loader = new BulkLoader(key)) {
+ *     for (...) { loader.add(plaintext, payload); }
+ *     try (MergeIterator entries = loader.sort()) {
+ *       while (entries.hasNext()) { ... }
+ *     }
+ *   }
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public class BulkLoader implements AutoCloseable {
+	
+	private static final long DEFAULT_RUN_BYTES = 64L * 1024 * 1024;
+	private static final int DEFAULT_MAX_FAN_IN = 128;
+	private static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+	
+	// Estimated heap overhead of a buffered record
+	private static final int RECORD_OVERHEAD = 64;
+	
+	// Plaintext lengths whose ciphertext lengths are cached
+	private static final int CACHED_LENGTHS = 256;
+	
+	private final Key key;
+	private final List<RunFile> runs = new ArrayList<>();
+	private final int[] ciphertextLengths = new int[CACHED_LENGTHS];
+	
+	private Path tempDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+	private long runBytes = DEFAULT_RUN_BYTES;
+	private int maxFanIn = DEFAULT_MAX_FAN_IN;
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+	
+	private byte[][] plaintexts = new byte[1024][];
+	private byte[][] payloads = new byte[1024][];
+	private int pending;
+	private long pendingBytes;
+	private boolean sorted;
+	
+	public BulkLoader(Key key) {
+		this.key = key;
+	}
+	
+	public Path getTempDirectory() {
+		return tempDirectory;
+	}
+	
+	public void setTempDirectory(Path tempDirectory) {
+		this.tempDirectory = tempDirectory;
+	}
+	
+	public long getRunBytes() {
+		return runBytes;
+	}
+	
+	/**
+	 * Sets the approximate amount of memory used to buffer records, and their
+	 * ciphertexts, before a run is spilled.
+	 */
+	public void setRunBytes(long runBytes) {
+		this.runBytes = runBytes;
+	}
+	
+	public int getMaxFanIn() {
+		return maxFanIn;
+	}
+	
+	/**
+	 * Sets the maximum number of runs merged at once. Each merged run uses
+	 * one I/O buffer.
+	 */
+	public void setMaxFanIn(int maxFanIn) throws OpeException {
+		if (maxFanIn < 2) { throw new OpeException("Fan-in must be at least 2."); }
+		this.maxFanIn = maxFanIn;
+	}
+	
+	public int getBufferSize() {
+		return bufferSize;
+	}
+	
+	/**
+	 * Sets the size of each I/O buffer used to write and read runs. It must
+	 * hold at least a record header (8 bytes).
+	 */
+	public void setBufferSize(int bufferSize) {
+		if (bufferSize < RunFile.HEADER_BYTES) {
+			throw new IllegalArgumentException("Buffer size must be at least " + RunFile.HEADER_BYTES + " bytes.");
+		}
+		this.bufferSize = bufferSize;
+	}
+	
+	/**
+	 * Returns the number of runs spilled to temporary files so far.
+	 */
+	public int getRunCount() {
+		return runs.size();
+	}
+	
+	public void add(byte[] plaintext, byte[] payload) throws OpeException {
+		if (sorted) { throw new OpeException("Loader has already been sorted."); }
+		
+		if (pending == plaintexts.length) {
+			plaintexts = Arrays.copyOf(plaintexts, pending * 2);
+			payloads = Arrays.copyOf(payloads, pending * 2);
+		}
+		
+		plaintexts[pending] = plaintext;
+		payloads[pending] = payload;
+		pending++;
+		
+		// Ciphertexts are held in memory with plaintexts while the run is sorted
+		pendingBytes += plaintext.length + getCiphertextLength(plaintext.length) + payload.length + RECORD_OVERHEAD;
+		
+		if (pendingBytes >= runBytes) { spill(); }
+	}
+	
+	/**
+	 * Returns all added records as entries in ciphertext order. The last run
+	 * is merged from memory. The loader cannot be used after this call, and
+	 * the returned iterator must be closed to release temporary files.
+	 */
+	public MergeIterator sort() throws OpeException {
+		if (sorted) { throw new OpeException("Loader has already been sorted."); }
+		sorted = true;
+		
+		Entry[] last = sortPending();
+		
+		// Merge adjacent runs until they fit in one pass, keeping order stable
+		while (runs.size() + 1 > maxFanIn) {
+			List<RunFile> merged = new ArrayList<>();
+			try {
+				for (int start = 0; start < runs.size(); start += maxFanIn) {
+					List<RunFile> group = runs.subList(start, Math.min(runs.size(), start + maxFanIn));
+					
+					if (group.size() == 1) {
+						merged.add(group.get(0));
+						
+					} else {
+						try (MergeIterator entries = merge(group, null)) {
+							merged.add(RunFile.write(tempDirectory, entries, bufferSize));
+						}
+					}
+				}
+				
+			} catch (OpeException e) {
+				for (RunFile run : merged) { run.delete(); }
+				throw e;
+			}
+			
+			runs.clear();
+			runs.addAll(merged);
+		}
+		
+		MergeIterator entries = merge(runs, last);
+		runs.clear();
+		return entries;
+	}
+	
+	/**
+	 * Deletes temporary files of runs that have not been merged.
+	 */
+	public void close() {
+		for (RunFile run : runs) { run.delete(); }
+		runs.clear();
+		
+		plaintexts = new byte[0][];
+		payloads = new byte[0][];
+		pending = 0;
+		pendingBytes = 0;
+	}
+	
+	private int getCiphertextLength(int plaintextLength) {
+		if (plaintextLength >= CACHED_LENGTHS) { return key.getCiphertextLength(plaintextLength); }
+		
+		// Keys without a native implementation encrypt to find the length
+		if (ciphertextLengths[plaintextLength] == 0) {
+			ciphertextLengths[plaintextLength] = key.getCiphertextLength(plaintextLength) + 1;
+		}
+		return ciphertextLengths[plaintextLength] - 1;
+	}
+	
+	private void spill() throws OpeException {
+		runs.add(RunFile.write(tempDirectory, Arrays.asList(sortPending()).iterator(), bufferSize));
+	}
+	
+	private Entry[] sortPending() {
+		byte[][] plaintexts = this.plaintexts;
+		byte[][] payloads = this.payloads;
+		
+		// Encrypt and sort in parallel
+		Entry[] entries = IntStream.range(0, pending).parallel()
+				.mapToObj(i -> new Entry(key.encrypt(plaintexts[i]), payloads[i]))
+				.toArray(Entry[]::new);
+		Arrays.parallelSort(entries, (e1, e2) -> CiphertextComparator.INSTANCE.compare(e1.getCiphertext(), e2.getCiphertext()));
+		
+		Arrays.fill(plaintexts, 0, pending, null);
+		Arrays.fill(payloads, 0, pending, null);
+		pending = 0;
+		pendingBytes = 0;
+		
+		return entries;
+	}
+	
+	private MergeIterator merge(List<RunFile> runs, Entry[] last) throws OpeException {
+		RunFile.Reader[] readers = new RunFile.Reader[runs.size()];
+		List<Iterator<Entry>> sources = new ArrayList<>();
+		
+		try {
+			for (int i = 0; i < readers.length; i++) {
+				readers[i] = runs.get(i).open(bufferSize);
+				sources.add(readers[i]);
+			}
+			
+		} catch (OpeException e) {
+			for (int i = 0; i < readers.length; i++) {
+				if (readers[i] != null) { readers[i].close(); } else { runs.get(i).delete(); }
+			}
+			throw e;
+		}
+		
+		if (last != null) { sources.add(Arrays.asList(last).iterator()); }
+		return new MergeIterator(sources, readers);
+	}
+}
@@ -0,0 +1,26 @@
+package ope.sort;
+
+/**
+ * A ciphertext paired with an opaque payload (e.g. a row ID or an
+ * encrypted row), as produced by BulkLoader.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public final class Entry {
+	
+	private final byte[] ciphertext;
+	private final byte[] payload;
+	
+	public Entry(byte[] ciphertext, byte[] payload) {
+		this.ciphertext = ciphertext;
+		this.payload = payload;
+	}
+	
+	public byte[] getCiphertext() {
+		return ciphertext;
+	}
+	
+	public byte[] getPayload() {
+		return payload;
+	}
+}
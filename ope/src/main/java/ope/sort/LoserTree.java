@@ -0,0 +1,94 @@
+package ope.sort;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Merges k sorted sources with a tournament tree of losers, so each element
+ * costs log2(k) comparisons against a single path of the tree.
+ * 
+ * Nodes 1 to k - 1 hold the loser of the match played at that node, leaves
+ * k to 2k - 1 stand for the sources, and node 0 holds the overall winner.
+ * Ties go to the source with the lower index, which keeps the merge stable.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+class LoserTree<T> implements Iterator<T> {
+	
+	private final List<? extends Iterator<? extends T>> sources;
+	private final Comparator<? super T> comparator;
+	// Current element of each source (always a T), or null when exhausted
+	private final Object[] heads;
+	private final int[] tree;
+	
+	LoserTree(List<? extends Iterator<? extends T>> sources, Comparator<? super T> comparator) {
+		this.sources = sources;
+		this.comparator = comparator;
+		this.heads = new Object[sources.size()];
+		this.tree = new int[Math.max(1, sources.size())];
+		
+		for (int i = 0; i < heads.length; i++) {
+			heads[i] = next(i);
+		}
+		
+		if (heads.length > 0) { tree[0] = build(1); }
+	}
+	
+	public boolean hasNext() {
+		return (heads.length > 0) && (heads[tree[0]] != null);
+	}
+	
+	@SuppressWarnings("unchecked")
+	public T next() {
+		if (!hasNext()) { throw new NoSuchElementException(); }
+		
+		int winner = tree[0];
+		T result = (T) heads[winner];
+		heads[winner] = next(winner);
+		
+		// Replay matches from the winner's leaf up to the root
+		for (int node = (winner + heads.length) >>> 1; node > 0; node >>>= 1) {
+			if (beats(tree[node], winner)) {
+				int loser = winner;
+				winner = tree[node];
+				tree[node] = loser;
+			}
+		}
+		
+		tree[0] = winner;
+		return result;
+	}
+	
+	private T next(int source) {
+		Iterator<? extends T> iterator = sources.get(source);
+		return iterator.hasNext() ? iterator.next() : null;
+	}
+	
+	private int build(int node) {
+		if (node >= heads.length) { return node - heads.length; }
+		
+		int left = build(2 * node);
+		int right = build(2 * node + 1);
+		
+		if (beats(left, right)) {
+			tree[node] = right;
+			return left;
+			
+		} else {
+			tree[node] = left;
+			return right;
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private boolean beats(int a, int b) {
+		// Exhausted sources always lose
+		if (heads[a] == null) { return false; }
+		if (heads[b] == null) { return true; }
+		
+		int result = comparator.compare((T) heads[a], (T) heads[b]);
+		return (result != 0) ? (result < 0) : (a < b);
+	}
+}
@@ -0,0 +1,60 @@
+package ope.sort;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import ope.OpeException;
+import ope.util.CiphertextComparator;
+
+/**
+ * Sorted entries produced by BulkLoader. Closing the iterator deletes the
+ * temporary files it reads from.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public class MergeIterator implements Iterator<Entry>, AutoCloseable {
+	
+	private final LoserTree<Entry> tree;
+	private final RunFile.Reader[] readers;
+	
+	MergeIterator(List<Iterator<Entry>> sources, RunFile.Reader[] readers) {
+		this.tree = new LoserTree<>(sources, (e1, e2) -> CiphertextComparator.INSTANCE.compare(e1.getCiphertext(), e2.getCiphertext()));
+		this.readers = readers;
+	}
+	
+	public boolean hasNext() {
+		return tree.hasNext();
+	}
+	
+	public Entry next() {
+		return tree.next();
+	}
+	
+	/**
+	 * Returns the remaining entries as a sequential stream, which closes this
+	 * iterator when it is closed.
+	 */
+	public Stream<Entry> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(this::close);
+	}
+	
+	public void close() throws OpeException {
+		OpeException failure = null;
+		
+		for (RunFile.Reader reader : readers) {
+			try {
+				reader.close();
+				
+			} catch (OpeException e) {
+				failure = e;
+			}
+		}
+		
+		if (failure != null) { throw failure; }
+	}
+}
@@ -0,0 +1,191 @@
+package ope.sort;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import ope.OpeException;
+
+/**
+ * A sorted run of entries spilled to a temporary file.
+ * 
+ * Entries are written back to back, each as its ciphertext length, payload
+ * length (both ints), ciphertext bytes and payload bytes. Files are written
+ * and read sequentially through a FileChannel and a direct buffer.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+class RunFile {
+	
+	// Ciphertext and payload lengths
+	static final int HEADER_BYTES = 8;
+	
+	private final Path path;
+	
+	private RunFile(Path path) {
+		this.path = path;
+	}
+	
+	/**
+	 * Writes entries to a new temporary file in directory.
+	 */
+	static RunFile write(Path directory, Iterator<Entry> entries, int bufferSize) throws OpeException {
+		Path path = null;
+		
+		try {
+			path = Files.createTempFile(directory, "ope-run", ".tmp");
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+				
+				while (entries.hasNext()) {
+					Entry entry = entries.next();
+					byte[] ciphertext = entry.getCiphertext();
+					byte[] payload = entry.getPayload();
+					
+					if (buffer.remaining() < HEADER_BYTES) { flush(channel, buffer); }
+					buffer.putInt(ciphertext.length);
+					buffer.putInt(payload.length);
+					put(channel, buffer, ciphertext);
+					put(channel, buffer, payload);
+				}
+				
+				flush(channel, buffer);
+			}
+			
+			return new RunFile(path);
+			
+		} catch (IOException e) {
+			if (path != null) { delete(path); }
+			throw new OpeException("Could not write sorted run.", e);
+		}
+	}
+	
+	/**
+	 * Opens the run for reading. The file is deleted when the reader is closed.
+	 */
+	Reader open(int bufferSize) throws OpeException {
+		try {
+			return new Reader(FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE), bufferSize);
+			
+		} catch (IOException e) {
+			throw new OpeException("Could not read sorted run.", e);
+		}
+	}
+	
+	void delete() {
+		delete(path);
+	}
+	
+	private static void delete(Path path) {
+		try {
+			Files.deleteIfExists(path);
+			
+		} catch (IOException e) {
+			// Temporary file, nothing else to do
+		}
+	}
+	
+	private static void put(FileChannel channel, ByteBuffer buffer, byte[] bytes) throws IOException {
+		// Large arrays bypass the buffer
+		if (bytes.length > buffer.capacity()) {
+			flush(channel, buffer);
+			ByteBuffer source = ByteBuffer.wrap(bytes);
+			while (source.hasRemaining()) { channel.write(source); }
+			return;
+		}
+		
+		if (buffer.remaining() < bytes.length) { flush(channel, buffer); }
+		buffer.put(bytes);
+	}
+	
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) { channel.write(buffer); }
+		buffer.clear();
+	}
+	
+	/**
+	 * Reads entries of a run in order.
+	 */
+	static class Reader implements Iterator<Entry>, AutoCloseable {
+		
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		
+		private boolean endOfFile;
+		
+		private Reader(FileChannel channel, int bufferSize) {
+			this.channel = channel;
+			this.buffer = ByteBuffer.allocateDirect(bufferSize);
+			this.buffer.flip();
+		}
+		
+		public boolean hasNext() {
+			return fill(1);
+		}
+		
+		public Entry next() {
+			if (!fill(HEADER_BYTES)) { throw new NoSuchElementException(); }
+			
+			int ciphertextLength = buffer.getInt();
+			int payloadLength = buffer.getInt();
+			return new Entry(read(ciphertextLength), read(payloadLength));
+		}
+		
+		public void close() throws OpeException {
+			try {
+				channel.close();
+				
+			} catch (IOException e) {
+				throw new OpeException("Could not close sorted run.", e);
+			}
+		}
+		
+		private byte[] read(int length) {
+			byte[] bytes = new byte[length];
+			
+			// Copy what is buffered, then read large arrays directly
+			int buffered = Math.min(length, buffer.remaining());
+			buffer.get(bytes, 0, buffered);
+			
+			if (buffered < length) {
+				if (length - buffered > buffer.capacity()) {
+					ByteBuffer target = ByteBuffer.wrap(bytes, buffered, length - buffered);
+					while (target.hasRemaining()) {
+						if (readChannel(target) < 0) { throw new OpeException("Truncated sorted run."); }
+					}
+					
+				} else {
+					if (!fill(length - buffered)) { throw new OpeException("Truncated sorted run."); }
+					buffer.get(bytes, buffered, length - buffered);
+				}
+			}
+			
+			return bytes;
+		}
+		
+		private boolean fill(int required) {
+			while (buffer.remaining() < required && !endOfFile) {
+				buffer.compact();
+				endOfFile = readChannel(buffer) < 0;
+				buffer.flip();
+			}
+			
+			return buffer.remaining() >= required;
+		}
+		
+		private int readChannel(ByteBuffer target) {
+			try {
+				return channel.read(target);
+				
+			} catch (IOException e) {
+				throw new OpeException("Could not read sorted run.", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package ope.util;
+
+import java.util.Comparator;
+
+/**
+ * Compares ciphertexts the way OPE schemes order them: as unsigned bit
+ * strings, byte by byte from the most significant byte. When one ciphertext
+ * is a prefix of the other, the shorter one comes first.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public class CiphertextComparator implements Comparator<byte[]> {
+	
+	public static final CiphertextComparator INSTANCE = new CiphertextComparator();
+	
+	private CiphertextComparator() {}
+
+	public int compare(byte[] c1, byte[] c2) {
+		return compare(c1, 0, c1.length, c2, 0, c2.length);
+	}
+	
+	public static int compare(byte[] c1, int offset1, int length1, byte[] c2, int offset2, int length2) {
+		int length = Math.min(length1, length2);
+		for (int i = 0; i < length; i++) {
+			int b1 = Byte.toUnsignedInt(c1[offset1 + i]);
+			int b2 = Byte.toUnsignedInt(c2[offset2 + i]);
+			if (b1 != b2) { return (b1 < b2) ? -1 : 1; }
+		}
+		return Integer.compare(length1, length2);
+	}
+}
@@ -1,19 +1,46 @@
 package ope.util;
 
+import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.UUID;
 
 import ope.OpeException;
 
 /**
- * This class is used for encoding Java primitive types and strings using
- * special OPE-friendly formats.
+ * This class is used for encoding Java primitive types, strings, big
+ * numbers, temporal values and UUIDs using special OPE-friendly formats.
+ * 
+ * Encoded values compare as unsigned bit strings in the same order as the
+ * values they encode, with shorter encodings first when one is a prefix of
+ * the other. Instant, LocalDate, LocalDateTime and UUID encodings have fixed
+ * sizes, and can be encrypted using MOPE keys of matching width. BigInteger
+ * and BigDecimal encodings have variable sizes, like strings.
  * 
  * @author Ayman Madkour <info@aymanmadkour.com>
  */
 public class Encoder {
 
+	public static final int INSTANT_SIZE = 11;
+	public static final int LOCAL_DATE_SIZE = 5;
+	public static final int LOCAL_DATE_TIME_SIZE = 11;
+	public static final int UUID_SIZE = 16;
+	
+	private static final int ZERO_HEADER = 0x80;
+	private static final int MAX_SHORT_LENGTH = 0x7f;
+	private static final int MAX_SHORT_EXPONENT = 0x7e;
+	
+	// Offsets making epoch seconds and days of the supported range non-negative
+	private static final long INSTANT_SECONDS_OFFSET = 1L << 55;
+	private static final long EPOCH_DAY_OFFSET = 1L << 39;
+	
 	private Encoder() {}
 	
 	public static byte[] encodeBoolean(boolean value) throws OpeException {
@@ -87,9 +114,10 @@ public class Encoder {
 	}
 	
 	public static byte[] encodeFloat(float value) throws OpeException {
+		// Negative values are ordered in reverse, so flip all bits except the sign
 		int floatInt = Float.floatToIntBits(value);
-		if (floatInt <0) {
-			floatInt = -floatInt - Integer.MAX_VALUE;
+		if (floatInt < 0) {
+			floatInt ^= Integer.MAX_VALUE;
 		}
 		return encodeInt(floatInt);
 	}
@@ -99,15 +127,16 @@ public class Encoder {
 
 		int floatInt = decodeInt(value);
 		if (floatInt < 0) {
-			floatInt = -floatInt + Integer.MAX_VALUE;
+			floatInt ^= Integer.MAX_VALUE;
 		}
 		return Float.intBitsToFloat(floatInt);
 	}
 	
 	public static byte[] encodeDouble(double value) throws OpeException {
+		// Negative values are ordered in reverse, so flip all bits except the sign
 		long doubleLong = Double.doubleToLongBits(value);
 		if (doubleLong < 0) {
-			doubleLong = -doubleLong - Long.MAX_VALUE;
+			doubleLong ^= Long.MAX_VALUE;
 		}
 		return encodeLong(doubleLong);
 	}
@@ -116,7 +145,7 @@ public class Encoder {
 		checkLength(value, 8);
 		long doubleLong = decodeLong(value);
 		if (doubleLong < 0) {
-			doubleLong = -doubleLong + Long.MAX_VALUE;
+			doubleLong ^= Long.MAX_VALUE;
 		}
 		return Double.longBitsToDouble(doubleLong);
 	}
@@ -143,6 +172,271 @@ public class Encoder {
 		else { return new String(value, StandardCharsets.UTF_8); }
 	}
 	
+	/**
+	 * Encodes a big integer as a header holding its sign and magnitude length,
+	 * followed by its magnitude. All bytes of negative values are inverted.
+	 */
+	public static byte[] encodeBigInteger(BigInteger value) throws OpeException {
+		if (value == null) { return null; }
+		if (value.signum() == 0) { return new byte[] { (byte) ZERO_HEADER }; }
+		
+		// Strip sign byte
+		byte[] magnitude = value.abs().toByteArray();
+		int start = (magnitude[0] == 0) ? 1 : 0;
+		int length = magnitude.length - start;
+		
+		// Lengths that do not fit in the header follow it
+		int headerLength = (length < MAX_SHORT_LENGTH) ? 1 : 5;
+		byte[] encoded = new byte[headerLength + length];
+		if (headerLength == 1) {
+			encoded[0] = (byte) (ZERO_HEADER + length);
+			
+		} else {
+			encoded[0] = (byte) 0xff;
+			putUnsigned(encoded, 1, length, 4);
+		}
+		
+		System.arraycopy(magnitude, start, encoded, headerLength, length);
+		if (value.signum() < 0) { invert(encoded, 0, encoded.length); }
+		return encoded;
+	}
+	
+	public static BigInteger decodeBigInteger(byte[] value) throws OpeException {
+		if (value == null) { return null; }
+		if (value.length == 1 && Byte.toUnsignedInt(value[0]) == ZERO_HEADER) { return BigInteger.ZERO; }
+		checkMinLength(value, 2);
+		
+		boolean negative = Byte.toUnsignedInt(value[0]) < ZERO_HEADER;
+		byte[] encoded = negative ? inverted(value, value.length) : value;
+		
+		int header = Byte.toUnsignedInt(encoded[0]);
+		int headerLength = (header == 0xff) ? 5 : 1;
+		checkMinLength(value, headerLength);
+		
+		long length = (header == 0xff) ? getUnsigned(encoded, 1, 4) : header - ZERO_HEADER;
+		if (length <= 0 || length != value.length - headerLength) {
+			throw new OpeException("Invalid BigInteger encoding.");
+		}
+		
+		BigInteger magnitude = new BigInteger(1, Arrays.copyOfRange(encoded, headerLength, encoded.length));
+		return negative ? magnitude.negate() : magnitude;
+	}
+	
+	/**
+	 * Encodes a big decimal as 0.d1d2...dn x 10^e, with trailing zeros
+	 * removed: a sign byte, the exponent e, and the digits packed in pairs.
+	 * All bytes of negative values are inverted, and followed by 0xff so that
+	 * longer mantissas sort first.
+	 * 
+	 * Values that are equal by compareTo have the same encoding, so decoded
+	 * values have no trailing zeros (e.g. 1.50 is decoded as 1.5).
+	 */
+	public static byte[] encodeBigDecimal(BigDecimal value) throws OpeException {
+		if (value == null) { return null; }
+		if (value.signum() == 0) { return new byte[] { (byte) ZERO_HEADER }; }
+		
+		BigDecimal normalized = value.stripTrailingZeros();
+		String digits = normalized.unscaledValue().abs().toString();
+		long exponent = (long) digits.length() - normalized.scale();
+		
+		boolean negative = value.signum() < 0;
+		int exponentLength = (exponent >= -MAX_SHORT_EXPONENT && exponent <= MAX_SHORT_EXPONENT) ? 1 : 9;
+		byte[] encoded = new byte[1 + exponentLength + (digits.length() + 1) / 2 + (negative ? 1 : 0)];
+		encoded[0] = (byte) 0xff;
+		
+		// Exponents that do not fit in one byte follow an escape byte
+		int offset = 1;
+		if (exponentLength == 1) {
+			encoded[offset++] = (byte) (exponent + 0x7f);
+			
+		} else {
+			encoded[offset++] = (byte) ((exponent > 0) ? 0xff : 0x00);
+			putUnsigned(encoded, offset, exponent ^ Long.MIN_VALUE, 8);
+			offset += 8;
+		}
+		
+		// Pack two digits per byte, from 1 to 100, padding with 0
+		for (int i = 0; i < digits.length(); i += 2) {
+			int high = digits.charAt(i) - '0';
+			int low = (i + 1 < digits.length()) ? digits.charAt(i + 1) - '0' : 0;
+			encoded[offset++] = (byte) (high * 10 + low + 1);
+		}
+		
+		if (negative) {
+			invert(encoded, 0, offset);
+			encoded[offset] = (byte) 0xff;
+		}
+		
+		return encoded;
+	}
+	
+	public static BigDecimal decodeBigDecimal(byte[] value) throws OpeException {
+		if (value == null) { return null; }
+		if (value.length == 1 && Byte.toUnsignedInt(value[0]) == ZERO_HEADER) { return BigDecimal.ZERO; }
+		checkMinLength(value, 3);
+		
+		boolean negative = (value[0] == 0);
+		if (negative ? (value[value.length - 1] != (byte) 0xff) : (value[0] != (byte) 0xff)) {
+			throw new OpeException("Invalid BigDecimal encoding.");
+		}
+		
+		int length = negative ? value.length - 1 : value.length;
+		byte[] encoded = negative ? inverted(value, length) : value;
+		
+		// Exponent
+		int offset = 1;
+		long exponent;
+		int escape = Byte.toUnsignedInt(encoded[offset++]);
+		if (escape == 0xff || escape == 0x00) {
+			checkMinLength(encoded, offset + 9);
+			exponent = getUnsigned(encoded, offset, 8) ^ Long.MIN_VALUE;
+			offset += 8;
+			
+		} else {
+			exponent = escape - 0x7f;
+		}
+		
+		// Digits
+		if (offset >= length) { throw new OpeException("Invalid BigDecimal encoding."); }
+		StringBuilder digits = new StringBuilder((length - offset) * 2);
+		for (; offset < length; offset++) {
+			int pair = Byte.toUnsignedInt(encoded[offset]) - 1;
+			if (pair < 0 || pair > 99) { throw new OpeException("Invalid BigDecimal encoding."); }
+			digits.append((char) ('0' + pair / 10)).append((char) ('0' + pair % 10));
+		}
+		if (digits.charAt(digits.length() - 1) == '0') { digits.setLength(digits.length() - 1); }
+		
+		try {
+			BigInteger unscaled = new BigInteger(digits.toString());
+			int scale = Math.toIntExact(digits.length() - exponent);
+			return new BigDecimal(negative ? unscaled.negate() : unscaled, scale);
+			
+		} catch (ArithmeticException e) {
+			throw new OpeException("Invalid BigDecimal encoding.", e);
+		}
+	}
+	
+	/**
+	 * Encodes an instant as 7 bytes of epoch seconds and 4 bytes of nanoseconds.
+	 */
+	public static byte[] encodeInstant(Instant value) throws OpeException {
+		if (value == null) { return null; }
+		
+		byte[] encoded = new byte[INSTANT_SIZE];
+		putUnsigned(encoded, 0, value.getEpochSecond() + INSTANT_SECONDS_OFFSET, 7);
+		putUnsigned(encoded, 7, value.getNano(), 4);
+		return encoded;
+	}
+	
+	public static Instant decodeInstant(byte[] value) throws OpeException {
+		if (value == null) { return null; }
+		checkLength(value, INSTANT_SIZE);
+		
+		try {
+			return Instant.ofEpochSecond(getUnsigned(value, 0, 7) - INSTANT_SECONDS_OFFSET, getUnsigned(value, 7, 4));
+			
+		} catch (DateTimeException | ArithmeticException e) {
+			throw new OpeException("Invalid Instant encoding.", e);
+		}
+	}
+	
+	/**
+	 * Encodes a date as 5 bytes of epoch days.
+	 */
+	public static byte[] encodeLocalDate(LocalDate value) throws OpeException {
+		if (value == null) { return null; }
+		
+		byte[] encoded = new byte[LOCAL_DATE_SIZE];
+		putUnsigned(encoded, 0, value.toEpochDay() + EPOCH_DAY_OFFSET, LOCAL_DATE_SIZE);
+		return encoded;
+	}
+	
+	public static LocalDate decodeLocalDate(byte[] value) throws OpeException {
+		if (value == null) { return null; }
+		checkLength(value, LOCAL_DATE_SIZE);
+		
+		try {
+			return LocalDate.ofEpochDay(getUnsigned(value, 0, LOCAL_DATE_SIZE) - EPOCH_DAY_OFFSET);
+			
+		} catch (DateTimeException e) {
+			throw new OpeException("Invalid LocalDate encoding.", e);
+		}
+	}
+	
+	/**
+	 * Encodes a date-time as 5 bytes of epoch days and 6 bytes of nanoseconds
+	 * of the day.
+	 */
+	public static byte[] encodeLocalDateTime(LocalDateTime value) throws OpeException {
+		if (value == null) { return null; }
+		
+		byte[] encoded = new byte[LOCAL_DATE_TIME_SIZE];
+		putUnsigned(encoded, 0, value.toLocalDate().toEpochDay() + EPOCH_DAY_OFFSET, LOCAL_DATE_SIZE);
+		putUnsigned(encoded, LOCAL_DATE_SIZE, value.toLocalTime().toNanoOfDay(), 6);
+		return encoded;
+	}
+	
+	public static LocalDateTime decodeLocalDateTime(byte[] value) throws OpeException {
+		if (value == null) { return null; }
+		checkLength(value, LOCAL_DATE_TIME_SIZE);
+		
+		try {
+			return LocalDateTime.of(
+					LocalDate.ofEpochDay(getUnsigned(value, 0, LOCAL_DATE_SIZE) - EPOCH_DAY_OFFSET),
+					LocalTime.ofNanoOfDay(getUnsigned(value, LOCAL_DATE_SIZE, 6)));
+			
+		} catch (DateTimeException e) {
+			throw new OpeException("Invalid LocalDateTime encoding.", e);
+		}
+	}
+	
+	/**
+	 * Encodes a UUID as its 16 bytes. UUIDs are ordered as unsigned 128-bit
+	 * numbers, which differs from UUID.compareTo when either half has its
+	 * highest bit set.
+	 */
+	public static byte[] encodeUUID(UUID value) throws OpeException {
+		if (value == null) { return null; }
+		
+		byte[] encoded = new byte[UUID_SIZE];
+		putUnsigned(encoded, 0, value.getMostSignificantBits(), 8);
+		putUnsigned(encoded, 8, value.getLeastSignificantBits(), 8);
+		return encoded;
+	}
+	
+	public static UUID decodeUUID(byte[] value) throws OpeException {
+		if (value == null) { return null; }
+		checkLength(value, UUID_SIZE);
+		return new UUID(getUnsigned(value, 0, 8), getUnsigned(value, 8, 8));
+	}
+	
+	private static void putUnsigned(byte[] bytes, int offset, long value, int length) {
+		for (int i = length - 1; i >= 0; i--, value >>>= 8) { bytes[offset + i] = (byte) value; }
+	}
+	
+	private static long getUnsigned(byte[] bytes, int offset, int length) {
+		long value = 0;
+		for (int i = 0; i < length; i++) { value = (value << 8) | Byte.toUnsignedLong(bytes[offset + i]); }
+		return value;
+	}
+	
+	private static void invert(byte[] bytes, int offset, int length) {
+		for (int i = offset; i < offset + length; i++) { bytes[i] = (byte) ~bytes[i]; }
+	}
+	
+	private static byte[] inverted(byte[] bytes, int length) {
+		byte[] result = Arrays.copyOf(bytes, length);
+		invert(result, 0, length);
+		return result;
+	}
+	
+	private static void checkMinLength(byte[] value, int minLength) throws OpeException {
+		checkNull(value);
+		if (value.length < minLength) {
+			throw new OpeException("Invalid byte array length. Expecting at least " + minLength + ", found " + value.length + ".");
+		}
+	}
+	
 	private static void checkNull(byte[] value) throws OpeException {
 		if (value == null) {
 			throw new OpeException("Input value is null.");
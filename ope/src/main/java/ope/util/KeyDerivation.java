@@ -0,0 +1,119 @@
+package ope.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import ope.OpeException;
+
+/**
+ * Deterministic stream of pseudorandom bytes derived from a master secret and
+ * a context (e.g. tenant, table and column), using HKDF with HMAC-SHA256.
+ * 
+ * Ciphers consume this stream in place of a SecureRandom to derive keys, so
+ * that the same master secret and context always produce the same key.
+ * 
+ * Reference:
+ * 
+ * Krawczyk, H., & Eronen, P. (2010).
+ * HMAC-based Extract-and-Expand Key Derivation Function (HKDF). RFC 5869.
+ * https://tools.ietf.org/html/rfc5869
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public class KeyDerivation {
+	
+	private static final String ALGORITHM = "HmacSHA256";
+	private static final byte[] SALT = "ope.util.KeyDerivation".getBytes(StandardCharsets.UTF_8);
+	
+	private static final int MAX_BLOCKS = 255;
+	
+	private final Mac mac;
+	private final byte[] info;
+	
+	private byte[] block = new byte[0];
+	private int blockPosition = 0;
+	private int blockCount = 0;
+	
+	public KeyDerivation(byte[] masterSecret, String... context) throws OpeException {
+		if (masterSecret == null || masterSecret.length == 0) {
+			throw new OpeException("Master secret cannot be empty.");
+		}
+		
+		try {
+			// Extract
+			mac = Mac.getInstance(ALGORITHM);
+			mac.init(new SecretKeySpec(SALT, ALGORITHM));
+			byte[] prk = mac.doFinal(masterSecret);
+			
+			// Prepare for expansion
+			mac.init(new SecretKeySpec(prk, ALGORITHM));
+			
+		} catch (GeneralSecurityException e) {
+			throw new OpeException("Could not initialize key derivation.", e);
+		}
+		
+		this.info = encodeContext(context);
+	}
+	
+	public void nextBytes(byte[] bytes) throws OpeException {
+		for (int i = 0; i < bytes.length; i++) {
+			if (blockPosition == block.length) { nextBlock(); }
+			bytes[i] = block[blockPosition++];
+		}
+	}
+	
+	public long nextLong() throws OpeException {
+		byte[] bytes = new byte[Long.BYTES];
+		nextBytes(bytes);
+		return ByteBuffer.wrap(bytes).getLong();
+	}
+	
+	/**
+	 * Returns a double uniformly distributed in [0, 1), built from 53 bits
+	 * the same way as java.util.Random.
+	 */
+	public double nextDouble() throws OpeException {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+	
+	private void nextBlock() throws OpeException {
+		if (blockCount == MAX_BLOCKS) {
+			throw new OpeException("Key derivation output exhausted.");
+		}
+		
+		// T(i) = HMAC(PRK, T(i - 1) | info | i)
+		mac.update(block);
+		mac.update(info);
+		mac.update((byte) ++blockCount);
+		block = mac.doFinal();
+		blockPosition = 0;
+	}
+	
+	private static byte[] encodeContext(String... context) {
+		// Length-prefix each part, so that ("ab", "c") and ("a", "bc") differ.
+		// Null parts have length -1, so that they differ from empty parts.
+		byte[][] parts = new byte[context.length][];
+		int size = 0;
+		for (int i = 0; i < context.length; i++) {
+			parts[i] = (context[i] != null) ? Encoder.encodeString(context[i]) : null;
+			size += Integer.BYTES + ((parts[i] != null) ? parts[i].length : 0);
+		}
+		
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		for (byte[] part : parts) {
+			if (part == null) {
+				buffer.putInt(-1);
+				
+			} else {
+				buffer.putInt(part.length);
+				buffer.put(part);
+			}
+		}
+		
+		return buffer.array();
+	}
+}
@@ -0,0 +1,80 @@
+package ope.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import ope.Processor;
+
+/**
+ * Input stream that reads from an underlying stream and returns the data
+ * after passing it through an Encryptor or Decryptor. The processor is
+ * finished when the underlying stream reaches its end.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public class ProcessorInputStream extends InputStream {
+	
+	private static final int CHUNK_SIZE = 4096;
+	
+	private final InputStream in;
+	private final Processor processor;
+	
+	private final byte[] chunk = new byte[CHUNK_SIZE];
+	
+	private byte[] buffer = new byte[0];
+	private int bufferPosition = 0;
+	private boolean finished = false;
+	
+	public ProcessorInputStream(InputStream in, Processor processor) {
+		this.in = in;
+		this.processor = processor;
+	}
+	
+	@Override
+	public int read() throws IOException {
+		if (!fill()) { return -1; }
+		return Byte.toUnsignedInt(buffer[bufferPosition++]);
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) { return 0; }
+		if (!fill()) { return -1; }
+		
+		int count = Math.min(len, buffer.length - bufferPosition);
+		System.arraycopy(buffer, bufferPosition, b, off, count);
+		bufferPosition += count;
+		return count;
+	}
+	
+	@Override
+	public int available() throws IOException {
+		return buffer.length - bufferPosition;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+	
+	/**
+	 * Makes sure there is processed data to return.
+	 * Returns false when all data has been returned.
+	 */
+	private boolean fill() throws IOException {
+		while (bufferPosition == buffer.length) {
+			if (finished) { return false; }
+			
+			int count = in.read(chunk);
+			if (count < 0) {
+				buffer = processor.finish();
+				finished = true;
+				
+			} else {
+				buffer = processor.update(chunk, 0, count);
+			}
+			bufferPosition = 0;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,50 @@
+package ope.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import ope.Processor;
+
+/**
+ * Output stream that passes everything written to it through an Encryptor or
+ * Decryptor before writing it to the underlying stream. The processor is
+ * finished when the stream is closed, which writes the remaining output
+ * (e.g. the final padding byte of Fast OPE ciphertexts).
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public class ProcessorOutputStream extends FilterOutputStream {
+	
+	private final Processor processor;
+	private boolean closed = false;
+	
+	public ProcessorOutputStream(OutputStream out, Processor processor) {
+		super(out);
+		this.processor = processor;
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(processor.update(b, off, len));
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if (closed) { return; }
+		closed = true;
+		
+		try {
+			out.write(processor.finish());
+			out.flush();
+			
+		} finally {
+			out.close();
+		}
+	}
+}
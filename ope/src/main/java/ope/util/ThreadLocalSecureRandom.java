@@ -0,0 +1,38 @@
+package ope.util;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * Provides one SecureRandom instance per thread, so that threads generating
+ * keys concurrently do not contend on a single shared generator.
+ * 
+ * Each instance is a DRBG (JDK 9 or later), which keeps its state in the
+ * instance and only reads the system entropy source when seeding. The
+ * platform default (e.g. NativePRNG) is not used where DRBG is available,
+ * since on Linux all NativePRNG instances share one lock and one
+ * /dev/urandom stream, which would serialize the threads again. On JDK 8,
+ * the platform default is used.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+public class ThreadLocalSecureRandom {
+	
+	private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(ThreadLocalSecureRandom::create);
+
+	private ThreadLocalSecureRandom() {}
+	
+	public static SecureRandom current() {
+		return RANDOM.get();
+	}
+	
+	private static SecureRandom create() {
+		try {
+			return SecureRandom.getInstance("DRBG");
+			
+		} catch (NoSuchAlgorithmException e) {
+			// JDK 8
+			return new SecureRandom();
+		}
+	}
+}
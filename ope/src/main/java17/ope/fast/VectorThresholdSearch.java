@@ -0,0 +1,69 @@
+package ope.fast;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD implementation of ThresholdSearch using the JDK Vector API.
+ * 
+ * Each value is compared against many thresholds per instruction, in two
+ * levels: first against every eighth threshold (32 pivots), to find the
+ * bucket of eight thresholds containing it, then against the thresholds of
+ * that bucket. Counting the thresholds not above the value gives the byte.
+ * This avoids gathers, which are slow compared to the dependent loads of the
+ * scalar binary search.
+ * 
+ * Built only on JDK 17 or later (see the vector profile in pom.xml), and
+ * loaded only if the jdk.incubator.vector module is available at runtime.
+ * 
+ * @author Ayman Madkour <info@aymanmadkour.com>
+ */
+class VectorThresholdSearch extends ThresholdSearch {
+	
+	private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+	
+	private static final int BUCKET_SIZE = 8;
+	private static final int PIVOTS = 256 / BUCKET_SIZE;
+	
+	VectorThresholdSearch() {
+		// Buckets must be made of whole vectors
+		if (SPECIES.length() > BUCKET_SIZE || BUCKET_SIZE % SPECIES.length() != 0) {
+			throw new UnsupportedOperationException("Unsupported vector size.");
+		}
+	}
+	
+	@Override
+	void search(long[] thresholds, long[] values, int count, byte[] results) {
+		int lanes = SPECIES.length();
+		
+		long[] pivots = new long[PIVOTS];
+		for (int i = 0; i < PIVOTS; i++) { pivots[i] = thresholds[i * BUCKET_SIZE]; }
+		
+		for (int i = 0; i < count; i++) {
+			long value = values[i];
+			
+			// Find bucket
+			int pivotCount = 0;
+			for (int j = 0; j < PIVOTS; j += lanes) {
+				pivotCount += LongVector.fromArray(SPECIES, pivots, j)
+						.compare(VectorOperators.LE, value).trueCount();
+			}
+			int bucket = Math.max(0, pivotCount - 1) * BUCKET_SIZE;
+			
+			// Find byte within bucket
+			int thresholdCount = 0;
+			for (int j = 0; j < BUCKET_SIZE; j += lanes) {
+				thresholdCount += LongVector.fromArray(SPECIES, thresholds, bucket + j)
+						.compare(VectorOperators.LE, value).trueCount();
+			}
+			
+			results[i] = (byte) (bucket + Math.max(0, thresholdCount - 1));
+		}
+	}
+	
+	@Override
+	boolean isVectorized() {
+		return true;
+	}
+}
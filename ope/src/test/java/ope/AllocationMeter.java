@@ -0,0 +1,80 @@
+package ope;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Assert;
+import org.junit.Assume;
+
+/**
+ * Measures the number of bytes allocated by the current thread while running
+ * an operation, using the HotSpot specific com.sun.management.ThreadMXBean.
+ * 
+ * Operations are warmed up before being measured, so that the JIT compiler has
+ * a chance to eliminate allocations that do not escape. Measurements are
+ * printed when system property ope.allocation.verbose is true.
+ * 
+ * @author Ayman Madkour
+ */
+public final class AllocationMeter {
+	
+	private static final int WARMUP_ITERATIONS = 5000;
+	private static final int MEASURED_ITERATIONS = 1000;
+	
+	private AllocationMeter() {}
+	
+	/**
+	 * Returns the average number of bytes allocated by a single run of the
+	 * given operation, or skips the calling test if the JVM does not support
+	 * per-thread allocation accounting.
+	 */
+	public static long measure(Runnable operation) {
+		com.sun.management.ThreadMXBean bean = threadBean();
+		long threadId = Thread.currentThread().getId();
+		
+		// Warm up
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) { operation.run(); }
+		
+		// Measure the cost of measuring
+		long start = bean.getThreadAllocatedBytes(threadId);
+		long overhead = bean.getThreadAllocatedBytes(threadId) - start;
+		
+		// Measure operation
+		start = bean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) { operation.run(); }
+		long allocated = bean.getThreadAllocatedBytes(threadId) - start - overhead;
+		
+		return Math.max(0, allocated / MEASURED_ITERATIONS);
+	}
+	
+	/**
+	 * Fails if a single run of the given operation allocates more than
+	 * budget bytes on average.
+	 */
+	public static void assertAllocation(String name, long budget, Runnable operation) {
+		long allocated = measure(operation);
+		
+		if (Boolean.getBoolean("ope.allocation.verbose")) {
+			System.out.println(String.format("%-24s %8d bytes (budget %d)", name, allocated, budget));
+		}
+		
+		Assert.assertTrue(name + " allocated " + allocated + " bytes, budget is " + budget + " bytes.",
+				allocated <= budget);
+	}
+	
+	private static com.sun.management.ThreadMXBean threadBean() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		
+		Assume.assumeTrue("Thread allocation accounting is not available.",
+				bean instanceof com.sun.management.ThreadMXBean);
+		
+		com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue("Thread allocation accounting is not supported.",
+				sunBean.isThreadAllocatedMemorySupported());
+		
+		if (!sunBean.isThreadAllocatedMemoryEnabled()) {
+			sunBean.setThreadAllocatedMemoryEnabled(true);
+		}
+		
+		return sunBean;
+	}
+}
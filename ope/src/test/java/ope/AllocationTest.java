@@ -0,0 +1,75 @@
+package ope;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Allocation regression tests for the encryption and decryption hot paths.
+ * Each implementation declares a per-operation budget in bytes, and the tests
+ * fail as soon as a warmed up operation allocates more than that.
+ * 
+ * Allocation depends on the key parameters (e.g. Fast OPE block sizes), so
+ * the tests use a fixed derived key, and budgets are sized for it.
+ * 
+ * @author Ayman Madkour
+ */
+public abstract class AllocationTest {
+	
+	private static final short PLAINTEXT = 12345;
+	private static final byte[] MASTER_SECRET = "allocation test".getBytes(StandardCharsets.UTF_8);
+	
+	protected Cipher cipher;
+	protected Key key;
+	
+	// Keeps results reachable so that operations are not optimized away
+	protected volatile Object sink;
+	
+	protected abstract Cipher createCipher();
+	
+	protected abstract long getEncryptBudget();
+	
+	protected abstract long getDecryptBudget();
+	
+	protected abstract long getEncryptStringBudget();
+	
+	protected abstract long getDecryptStringBudget();
+	
+	protected String getPlaintextString() {
+		return "order-preserving";
+	}
+	
+	@Before
+	public void setUp() {
+		cipher = createCipher();
+		key = cipher.deriveKey(MASTER_SECRET, "allocation");
+	}
+	
+	@Test
+	public void testEncryptAllocation() {
+		AllocationMeter.assertAllocation(getClass().getSimpleName() + ".encryptShort", getEncryptBudget(),
+				() -> sink = key.encryptShort(PLAINTEXT));
+	}
+	
+	@Test
+	public void testDecryptAllocation() {
+		byte[] ciphertext = key.encryptShort(PLAINTEXT);
+		AllocationMeter.assertAllocation(getClass().getSimpleName() + ".decryptShort", getDecryptBudget(),
+				() -> sink = key.decryptShort(ciphertext));
+	}
+	
+	@Test
+	public void testEncryptStringAllocation() {
+		String plaintext = getPlaintextString();
+		AllocationMeter.assertAllocation(getClass().getSimpleName() + ".encryptString", getEncryptStringBudget(),
+				() -> sink = key.encryptString(plaintext));
+	}
+	
+	@Test
+	public void testDecryptStringAllocation() {
+		byte[] ciphertext = key.encryptString(getPlaintextString());
+		AllocationMeter.assertAllocation(getClass().getSimpleName() + ".decryptString", getDecryptStringBudget(),
+				() -> sink = key.decryptString(ciphertext));
+	}
+}
@@ -0,0 +1,172 @@
+package ope;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import ope.fast.FastOpeCipher;
+import ope.mope.MopeCipher;
+import ope.util.CiphertextComparator;
+import ope.util.Encoder;
+
+/**
+ * @author Ayman Madkour
+ */
+public class CiphertextArenaTest {
+	
+	private static final int VALUES = 3000;
+	
+	private Key key;
+	private int[] values;
+	
+	@Before
+	public void setUp() {
+		key = new FastOpeCipher().generateKey();
+		
+		Random random = new Random(1);
+		values = new int[VALUES];
+		for (int i = 0; i < VALUES; i++) { values[i] = random.nextInt(); }
+	}
+	
+	@Test
+	public void testAppendAndGet() {
+		// Small slabs, so that ciphertexts do not fill them exactly
+		CiphertextArena arena = new CiphertextArena(1024);
+		for (int i = 0; i < VALUES; i++) {
+			Assert.assertEquals(i, key.encryptInt(values[i], arena));
+		}
+		
+		Assert.assertEquals(VALUES, arena.size());
+		Assert.assertTrue(arena.getMemoryUsage() > 1024);
+		
+		for (int i = 0; i < VALUES; i++) {
+			byte[] ciphertext = key.encryptInt(values[i]);
+			Assert.assertArrayEquals(ciphertext, arena.get(i));
+			Assert.assertEquals(ByteBuffer.wrap(ciphertext), arena.slice(i));
+			Assert.assertEquals(values[i], Encoder.decodeInt(arena.decrypt(key, i)));
+		}
+		
+		// Ciphertexts copied from elsewhere
+		int ordinal = arena.append(key.encryptString("arena"));
+		Assert.assertEquals("arena", key.decryptString(arena.get(ordinal)));
+	}
+	
+	@Test
+	public void testCompare() {
+		assertCompare(new CiphertextArena(4096));
+	}
+	
+	@Test
+	public void testCompareLittleEndianSlabs() {
+		assertCompare(new CiphertextArena(4096, size -> ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN)));
+	}
+	
+	private void assertCompare(CiphertextArena arena) {
+		for (int i = 0; i < 200; i++) { key.encryptInt(values[i], arena); }
+		
+		// Ciphertexts of different lengths
+		key.encryptString("a", arena);
+		key.encryptString("ab", arena);
+		key.encryptString("abcdefghijklmnopqrstuvwxyz", arena);
+		
+		for (int i = 0; i < arena.size(); i++) {
+			for (int j = 0; j < arena.size(); j++) {
+				int expected = CiphertextComparator.INSTANCE.compare(arena.get(i), arena.get(j));
+				Assert.assertEquals(Integer.signum(expected), Integer.signum(arena.compare(i, j)));
+				Assert.assertEquals(Integer.signum(expected), Integer.signum(arena.compare(i, arena.get(j))));
+			}
+		}
+		
+		// Arrays differing from a stored ciphertext in one byte, within and after the first 8 bytes
+		for (int i = 0; i < arena.size(); i++) {
+			byte[] ciphertext = arena.get(i);
+			for (int index = 0; index < ciphertext.length; index++) {
+				for (byte b : new byte[] { 0x00, 0x7f, (byte) 0x80, (byte) 0xff }) {
+					byte[] other = ciphertext.clone();
+					other[index] = b;
+					int expected = CiphertextComparator.INSTANCE.compare(ciphertext, other);
+					Assert.assertEquals(Integer.signum(expected), Integer.signum(arena.compare(i, other)));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testBulkDecryption() {
+		CiphertextArena arena = new CiphertextArena();
+		for (int value : values) { key.encryptInt(value, arena); }
+		Assert.assertArrayEquals(values, arena.decryptInts(key));
+		
+		// Part of the arena, with MOPE
+		Key mopeKey = new MopeCipher(new FastOpeCipher(), 8).generateKey();
+		CiphertextArena longs = new CiphertextArena();
+		for (int value : values) { mopeKey.encryptLong(value * 1000L, longs); }
+		
+		long[] decrypted = new long[100];
+		longs.decryptLongs(mopeKey, 50, decrypted);
+		for (int i = 0; i < decrypted.length; i++) { Assert.assertEquals(values[50 + i] * 1000L, decrypted[i]); }
+		
+		CiphertextArena doubles = new CiphertextArena();
+		for (int value : values) { key.encryptDouble(value / 7.0, doubles); }
+		double[] decryptedDoubles = doubles.decryptDoubles(key);
+		for (int i = 0; i < VALUES; i++) { Assert.assertEquals(values[i] / 7.0, decryptedDoubles[i], 0.0); }
+	}
+	
+	@Test
+	public void testClear() {
+		CiphertextArena arena = new CiphertextArena(256);
+		for (int i = 0; i < 100; i++) { key.encryptInt(values[i], arena); }
+		
+		arena.clear();
+		Assert.assertEquals(0, arena.size());
+		Assert.assertEquals(256, arena.getMemoryUsage());
+		
+		key.encryptInt(values[0], arena);
+		Assert.assertEquals(values[0], key.decryptInt(arena.get(0)));
+	}
+	
+	@Test
+	public void testReleaseSlabs() {
+		List<ByteBuffer> allocated = new ArrayList<>();
+		List<ByteBuffer> released = new ArrayList<>();
+		CiphertextArena arena = new CiphertextArena(256, size -> {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+			allocated.add(buffer);
+			return buffer;
+		}, released::add);
+		
+		for (int i = 0; i < 100; i++) { key.encryptInt(values[i], arena); }
+		Assert.assertTrue(allocated.size() > 1);
+		
+		// Clear releases all slabs but the first, close releases the first too
+		arena.clear();
+		Assert.assertEquals(allocated.size() - 1, released.size());
+		Assert.assertFalse(released.contains(allocated.get(0)));
+		for (ByteBuffer buffer : released) { Assert.assertTrue(allocated.contains(buffer)); }
+		
+		key.encryptInt(values[0], arena);
+		arena.close();
+		Assert.assertEquals(allocated.size(), released.size());
+		Assert.assertTrue(released.contains(allocated.get(0)));
+		Assert.assertEquals(0, arena.size());
+		Assert.assertEquals(0, arena.getMemoryUsage());
+		
+		// Closed arenas allocate new slabs if used again
+		try (CiphertextArena reused = arena) {
+			key.encryptInt(values[1], reused);
+			Assert.assertEquals(values[1], key.decryptInt(reused.get(0)));
+		}
+		Assert.assertEquals(allocated.size(), released.size());
+	}
+	
+	@Test(expected = OpeException.class)
+	public void testCiphertextLargerThanSlab() {
+		key.encrypt(new byte[100], new CiphertextArena(64));
+	}
+}
@@ -1,7 +1,10 @@
 package ope;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -125,6 +128,94 @@ public abstract class OpeTest {
 		}
 	}
 
+	@Test
+	public void testGenerateKeys() {
+		byte[][] encodedKeys = cipher.generateKeys(16);
+		Assert.assertEquals(16, encodedKeys.length);
+		
+		// Every generated key must be usable
+		for (byte[] encodedKey : encodedKeys) {
+			Key generatedKey = cipher.decodeKey(encodedKey);
+			
+			for (short plaintext : plaintexts) {
+				Assert.assertEquals(plaintext, generatedKey.decryptShort(generatedKey.encryptShort(plaintext)));
+			}
+		}
+		
+		// Keys can also be streamed to a sink
+		AtomicInteger count = new AtomicInteger();
+		cipher.generateKeys(100, encodedKey -> count.incrementAndGet());
+		Assert.assertEquals(100, count.get());
+	}
+
+	@Test
+	public void testDeriveKey() {
+		byte[] masterSecret = "master secret".getBytes(StandardCharsets.UTF_8);
+		
+		Key derivedKey = cipher.deriveKey(masterSecret, "tenant", "table", "column");
+		
+		// Same master secret and context produce the same key
+		Assert.assertArrayEquals(derivedKey.encodeKey(),
+				createCipher().deriveKey(masterSecret, "tenant", "table", "column").encodeKey());
+		
+		// Different contexts produce different keys
+		Assert.assertFalse(Arrays.equals(derivedKey.encodeKey(),
+				cipher.deriveKey(masterSecret, "tenant", "table", "other").encodeKey()));
+		Assert.assertFalse(Arrays.equals(derivedKey.encodeKey(),
+				cipher.deriveKey(masterSecret, "tenant", "tablecolumn").encodeKey()));
+		
+		// Derived key must be usable
+		for (short plaintext : plaintexts) {
+			Assert.assertEquals(plaintext, derivedKey.decryptShort(derivedKey.encryptShort(plaintext)));
+		}
+	}
+	
+	@Test
+	public void testDeriveKeyNullContext() {
+		byte[] masterSecret = "master secret".getBytes(StandardCharsets.UTF_8);
+		
+		// Null and empty parts produce different keys
+		byte[] nullKey = cipher.deriveKey(masterSecret, (String) null).encodeKey();
+		Assert.assertArrayEquals(nullKey, createCipher().deriveKey(masterSecret, (String) null).encodeKey());
+		Assert.assertFalse(Arrays.equals(nullKey, cipher.deriveKey(masterSecret, "").encodeKey()));
+		Assert.assertFalse(Arrays.equals(
+				cipher.deriveKey(masterSecret, "tenant", null).encodeKey(),
+				cipher.deriveKey(masterSecret, "tenant", "").encodeKey()));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testGenerateKeysNegativeCount() {
+		cipher.generateKeys(-1);
+	}
+	
+	@Test(expected = OpeException.class)
+	public void testDeriveKeyUnsupported() {
+		// Ciphers written before key derivation still compile, and fail on use
+		Cipher legacy = new Cipher() {
+			@Override
+			public Key generateKey() {
+				return cipher.generateKey();
+			}
+			
+			@Override
+			public Key decodeKey(byte[] bytes) {
+				return cipher.decodeKey(bytes);
+			}
+		};
+		
+		legacy.deriveKey(new byte[16], "context");
+	}
+
+	@Test
+	public void testBatchDecrypt() {
+		byte[][] plaintexts = key.decrypt(ciphertexts);
+		
+		Assert.assertEquals(ciphertexts.length, plaintexts.length);
+		for (int i = 0; i < ciphertexts.length; i++) {
+			Assert.assertArrayEquals(key.decrypt(ciphertexts[i]), plaintexts[i]);
+		}
+	}
+
 	protected static String toString(byte[] bytes) {
 		StringBuilder s = new StringBuilder();
 		for (byte b : bytes) { s.append(String.format("%02x", Byte.toUnsignedInt(b))); }
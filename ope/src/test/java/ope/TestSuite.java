@@ -3,9 +3,35 @@ package ope;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
+import ope.aggregate.AggregateTest;
+import ope.fast.FastOpeAllocationTest;
 import ope.fast.FastOpeTest;
+import ope.index.CiphertextHashIndexTest;
+import ope.join.CiphertextJoinTest;
+import ope.mope.MopeAllocationTest;
 import ope.mope.MopeTest;
+import ope.partition.PartitionTest;
+import ope.schema.RowCodecTest;
+import ope.sort.BulkLoaderTest;
+import ope.util.EncoderAllocationTest;
+import ope.util.EncoderTest;
+import ope.util.ThreadLocalSecureRandomTest;
 
 @RunWith(Suite.class)
-@Suite.SuiteClasses({ FastOpeTest.class, MopeTest.class })
+@Suite.SuiteClasses({
+	FastOpeTest.class,
+	MopeTest.class,
+	FastOpeAllocationTest.class,
+	MopeAllocationTest.class,
+	EncoderAllocationTest.class,
+	EncoderTest.class,
+	PartitionTest.class,
+	AggregateTest.class,
+	CiphertextHashIndexTest.class,
+	RowCodecTest.class,
+	BulkLoaderTest.class,
+	CiphertextJoinTest.class,
+	CiphertextArenaTest.class,
+	ThreadLocalSecureRandomTest.class
+})
 public class TestSuite {}
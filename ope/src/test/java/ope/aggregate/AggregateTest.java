@@ -0,0 +1,70 @@
+package ope.aggregate;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import ope.Key;
+import ope.fast.FastOpeCipher;
+import ope.util.Encoder;
+
+/**
+ * @author Ayman Madkour
+ */
+public class AggregateTest {
+	
+	private static final int VALUES = 2000;
+	
+	private Key key;
+	private int[] plaintexts;
+	private byte[][] ciphertexts;
+	
+	@Before
+	public void setUp() {
+		key = new FastOpeCipher().generateKey();
+		
+		Random random = new Random(1);
+		plaintexts = new int[VALUES];
+		ciphertexts = new byte[VALUES][];
+		for (int i = 0; i < VALUES; i++) {
+			plaintexts[i] = random.nextInt(200000) - 100000;
+			ciphertexts[i] = key.encryptInt(plaintexts[i]);
+		}
+		
+		Arrays.sort(plaintexts);
+	}
+	
+	@Test
+	public void testMinMax() {
+		MinMax minMax = Aggregate.aggregate(Arrays.stream(ciphertexts), MinMax::new);
+		
+		Assert.assertEquals(VALUES, minMax.getCount());
+		Assert.assertEquals(plaintexts[0], key.decryptInt(minMax.getMin()));
+		Assert.assertEquals(plaintexts[VALUES - 1], key.decryptInt(minMax.getMax()));
+	}
+	
+	@Test
+	public void testTopK() {
+		byte[][] largest = Aggregate.aggregate(Arrays.stream(ciphertexts), () -> TopK.largest(5)).decrypt(key);
+		byte[][] smallest = Aggregate.aggregate(Arrays.stream(ciphertexts), () -> TopK.smallest(5)).decrypt(key);
+		
+		Assert.assertEquals(5, largest.length);
+		Assert.assertEquals(5, smallest.length);
+		for (int i = 0; i < 5; i++) {
+			Assert.assertEquals(plaintexts[VALUES - 1 - i], Encoder.decodeInt(largest[i]));
+			Assert.assertEquals(plaintexts[i], Encoder.decodeInt(smallest[i]));
+		}
+	}
+	
+	@Test
+	public void testMedian() {
+		// Sketch capacity exceeds number of values, so the median is exact
+		Quantiles quantiles = Aggregate.aggregate(Arrays.stream(ciphertexts), () -> new Quantiles(VALUES));
+		
+		Assert.assertEquals(VALUES, quantiles.getCount());
+		Assert.assertEquals(plaintexts[VALUES / 2], key.decryptInt(quantiles.median()));
+	}
+}
@@ -0,0 +1,34 @@
+package ope.fast;
+
+import ope.AllocationTest;
+import ope.Cipher;
+
+/**
+ * @author Ayman Madkour
+ */
+public class FastOpeAllocationTest extends AllocationTest {
+	@Override
+	protected Cipher createCipher() {
+		return new FastOpeCipher();
+	}
+
+	@Override
+	protected long getEncryptBudget() {
+		return 24_000;
+	}
+
+	@Override
+	protected long getDecryptBudget() {
+		return 80_000;
+	}
+
+	@Override
+	protected long getEncryptStringBudget() {
+		return 160_000;
+	}
+
+	@Override
+	protected long getDecryptStringBudget() {
+		return 160_000;
+	}
+}
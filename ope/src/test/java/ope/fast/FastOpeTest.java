@@ -1,7 +1,24 @@
 package ope.fast;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import ope.CiphertextRange;
 import ope.OpeTest;
+import ope.Processor;
 import ope.Cipher;
+import ope.util.ProcessorInputStream;
+import ope.util.ProcessorOutputStream;
 
 /**
  * @author Ayman Madkour
@@ -11,4 +28,164 @@ public class FastOpeTest extends OpeTest {
 	protected Cipher createCipher() {
 		return new FastOpeCipher();
 	}
+
+	@Test
+	public void testIncrementalEncryption() {
+		Random random = new Random(1);
+
+		for (int length = 0; length <= 40; length++) {
+			byte[] plaintext = new byte[length];
+			random.nextBytes(plaintext);
+			byte[] ciphertext = key.encrypt(plaintext);
+
+			for (int chunkSize = 1; chunkSize <= 9; chunkSize++) {
+				Assert.assertArrayEquals(ciphertext, process(key.encryptor(), plaintext, chunkSize));
+				Assert.assertArrayEquals(plaintext, process(key.decryptor(), ciphertext, chunkSize));
+			}
+		}
+	}
+
+	@Test
+	public void testStreams() throws IOException {
+		byte[] plaintext = new byte[10000];
+		new Random(2).nextBytes(plaintext);
+
+		// Encrypt while writing
+		ByteArrayOutputStream ciphertext = new ByteArrayOutputStream();
+		try (OutputStream out = new ProcessorOutputStream(ciphertext, key.encryptor())) {
+			out.write(plaintext, 0, 1);
+			out.write(plaintext, 1, plaintext.length - 1);
+		}
+		Assert.assertArrayEquals(key.encrypt(plaintext), ciphertext.toByteArray());
+
+		// Decrypt while reading
+		ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+		try (InputStream in = new ProcessorInputStream(new ByteArrayInputStream(ciphertext.toByteArray()), key.decryptor())) {
+			byte[] buffer = new byte[1000];
+			for (int count = in.read(buffer); count >= 0; count = in.read(buffer)) {
+				decrypted.write(buffer, 0, count);
+			}
+		}
+		Assert.assertArrayEquals(plaintext, decrypted.toByteArray());
+	}
+
+	@Test
+	public void testPrefixRange() {
+		String[] values = new String[] {
+				"", "a", "ap", "app", "appl", "apple", "application", "applied", "apps",
+				"apo", "apq", "apricot", "aq", "b", "banana", "\u00e1pp", "app\u00e9", "zzz"
+		};
+
+		// Prefixes of every length, to cross block boundaries
+		for (String prefix : new String[] { "", "a", "ap", "app", "appl", "appli", "applic", "applica", "applicat", "applicati" }) {
+			CiphertextRange range = key.encryptPrefixRange(prefix);
+
+			for (String value : values) {
+				Assert.assertEquals(prefix + " / " + value, value.startsWith(prefix),
+						range.contains(key.encryptString(value)));
+			}
+		}
+
+		// Random binary prefixes
+		Random random = new Random(3);
+		for (int i = 0; i < 200; i++) {
+			byte[] prefix = new byte[random.nextInt(10)];
+			random.nextBytes(prefix);
+			CiphertextRange range = key.encryptPrefixRange(prefix);
+
+			byte[] value = Arrays.copyOf(prefix, prefix.length + random.nextInt(10));
+			Assert.assertTrue(range.contains(key.encrypt(value)));
+
+			// Changing any prefix byte moves the value out of range
+			if (prefix.length > 0) {
+				value[random.nextInt(prefix.length)] ^= 1 << random.nextInt(8);
+				Assert.assertFalse(range.contains(key.encrypt(value)));
+			}
+		}
+	}
+
+	@Test
+	public void testBatchDecryptVariableLength() {
+		Random random = new Random(4);
+		byte[][] plaintexts = new byte[200][];
+		byte[][] ciphertexts = new byte[plaintexts.length][];
+		for (int i = 0; i < plaintexts.length; i++) {
+			plaintexts[i] = new byte[random.nextInt(20)];
+			random.nextBytes(plaintexts[i]);
+			ciphertexts[i] = key.encrypt(plaintexts[i]);
+		}
+
+		byte[][] decrypted = key.decrypt(ciphertexts);
+		for (int i = 0; i < plaintexts.length; i++) {
+			Assert.assertArrayEquals(plaintexts[i], decrypted[i]);
+		}
+		
+		// Ciphertexts read in place, between other bytes of a buffer
+		ByteBuffer[] buffers = new ByteBuffer[ciphertexts.length];
+		for (int i = 0; i < ciphertexts.length; i++) {
+			byte[] padded = new byte[ciphertexts[i].length + 6];
+			Arrays.fill(padded, (byte) 0xff);
+			System.arraycopy(ciphertexts[i], 0, padded, 3, ciphertexts[i].length);
+			buffers[i] = ByteBuffer.wrap(padded, 3, ciphertexts[i].length);
+		}
+		
+		decrypted = key.decrypt(buffers);
+		for (int i = 0; i < plaintexts.length; i++) {
+			Assert.assertArrayEquals(plaintexts[i], decrypted[i]);
+			Assert.assertEquals(3, buffers[i].position());
+		}
+	}
+
+	@Test
+	public void testThresholdSearch() {
+		long[] thresholds = ((FastOpeKey) key).getThresholds();
+		long[] values = thresholdSearchValues(thresholds);
+
+		byte[] results = new byte[values.length];
+		new ThresholdSearch().search(thresholds, values, values.length, results);
+
+		for (int i = 0; i < 512; i++) {
+			Assert.assertEquals(i / 2, Byte.toUnsignedInt(results[i]));
+		}
+	}
+
+	@Test
+	public void testVectorThresholdSearch() {
+		ThresholdSearch vector = ThresholdSearch.create(true);
+		Assume.assumeTrue("Vector threshold search is not available.", vector.isVectorized());
+
+		long[] thresholds = ((FastOpeKey) key).getThresholds();
+		long[] values = thresholdSearchValues(thresholds);
+
+		byte[] scalar = new byte[values.length];
+		byte[] vectorized = new byte[values.length];
+		new ThresholdSearch().search(thresholds, values, values.length, scalar);
+		vector.search(thresholds, values, values.length, vectorized);
+
+		Assert.assertArrayEquals(scalar, vectorized);
+	}
+
+	private static long[] thresholdSearchValues(long[] thresholds) {
+		// All thresholds, values between them, and a few edge values
+		long[] values = new long[512 + 3];
+		for (int i = 0; i < 256; i++) {
+			values[2 * i] = thresholds[i];
+			values[2 * i + 1] = (i < 255) ? (thresholds[i] + thresholds[i + 1]) / 2 : thresholds[i] + 1;
+		}
+		values[512] = thresholds[0];
+		values[513] = thresholds[128] - 1;
+		values[514] = Long.MAX_VALUE;
+		return values;
+	}
+
+	private static byte[] process(Processor processor, byte[] input, int chunkSize) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		for (int offset = 0; offset < input.length; offset += chunkSize) {
+			byte[] chunk = processor.update(input, offset, Math.min(chunkSize, input.length - offset));
+			output.write(chunk, 0, chunk.length);
+		}
+		byte[] last = processor.finish();
+		output.write(last, 0, last.length);
+		return output.toByteArray();
+	}
 }
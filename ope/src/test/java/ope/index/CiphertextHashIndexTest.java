@@ -0,0 +1,156 @@
+package ope.index;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import ope.Key;
+import ope.fast.FastOpeCipher;
+
+/**
+ * @author Ayman Madkour
+ */
+public class CiphertextHashIndexTest {
+	
+	private static final int ROWS = 5000;
+	private static final int DISTINCT_VALUES = 1000;
+	
+	private byte[][] ciphertexts;
+	
+	@Before
+	public void setUp() {
+		Key key = new FastOpeCipher().generateKey();
+		
+		ciphertexts = new byte[DISTINCT_VALUES][];
+		for (int i = 0; i < DISTINCT_VALUES; i++) {
+			ciphertexts[i] = key.encryptInt(i);
+		}
+	}
+	
+	@Test
+	public void testLookup() {
+		// Start small to force resizing
+		CiphertextHashIndex index = new CiphertextHashIndex(1);
+		for (int row = 0; row < ROWS; row++) {
+			index.put(ciphertexts[row % DISTINCT_VALUES], row);
+		}
+		
+		Assert.assertEquals(ROWS, index.size());
+		Assert.assertEquals(DISTINCT_VALUES, index.getCiphertextCount());
+		
+		// Rows for the same ciphertext are returned in insertion order
+		for (int value = 0; value < DISTINCT_VALUES; value++) {
+			long[] rowIds = index.get(ciphertexts[value]);
+			Assert.assertEquals(ROWS / DISTINCT_VALUES, rowIds.length);
+			for (int i = 0; i < rowIds.length; i++) {
+				Assert.assertEquals(value + i * DISTINCT_VALUES, rowIds[i]);
+			}
+		}
+		
+		// Missing ciphertext
+		Assert.assertFalse(index.contains(new byte[] { 1, 2, 3 }));
+	}
+	
+	@Test
+	public void testLowCardinality() {
+		// Many rows per ciphertext take one slot each, so this stays linear
+		CiphertextHashIndex index = new CiphertextHashIndex(1);
+		int rows = 200_000;
+		for (int row = 0; row < rows; row++) {
+			index.put(ciphertexts[row % 2], row);
+		}
+		
+		Assert.assertEquals(rows, index.size());
+		Assert.assertEquals(2, index.getCiphertextCount());
+		
+		long[] rowIds = index.get(ciphertexts[1]);
+		Assert.assertEquals(rows / 2, rowIds.length);
+		for (int i = 0; i < rowIds.length; i++) { Assert.assertEquals(2 * i + 1, rowIds[i]); }
+		
+		Assert.assertFalse(index.contains(ciphertexts[2]));
+	}
+	
+	@Test
+	public void testHighBytes() {
+		// Keys differing only in bytes >= 0x80, and their signed lookalikes
+		// (0x7f and 0x80 apart, 0xff next to 0x00 and 0x01)
+		byte[][] keys = new byte[][] {
+			{ (byte) 0x80 }, { (byte) 0xff }, { 0x00 }, { 0x7f }, { 0x01 },
+			{ 0x10, (byte) 0x80, 0x10 }, { 0x10, (byte) 0x81, 0x10 }, { 0x10, (byte) 0xff, 0x10 },
+			{ 0x10, 0x00, 0x10 }, { 0x10, 0x7f, 0x10 }, { 0x10, 0x01, 0x10 },
+			{ (byte) 0xff, (byte) 0xff }, { (byte) 0xff, 0x7f }, { 0x7f, (byte) 0xff }, { (byte) 0xff, 0x00 }, { 0x00, (byte) 0xff },
+			{ (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff }, { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xfe }
+		};
+		
+		// Insert key k (k + 1) times, through an offset into a larger array
+		CiphertextHashIndex index = new CiphertextHashIndex(1);
+		int rows = 0;
+		for (int k = 0; k < keys.length; k++) {
+			byte[] padded = new byte[keys[k].length + 2];
+			padded[0] = (byte) 0xff;
+			System.arraycopy(keys[k], 0, padded, 1, keys[k].length);
+			for (int i = 0; i <= k; i++) {
+				index.put(padded, 1, keys[k].length, k * 100 + i);
+				rows++;
+			}
+		}
+		
+		Assert.assertEquals(rows, index.size());
+		Assert.assertEquals(keys.length, index.getCiphertextCount());
+		
+		for (int k = 0; k < keys.length; k++) {
+			long[] rowIds = index.get(keys[k]);
+			Assert.assertEquals(k + 1, rowIds.length);
+			for (int i = 0; i <= k; i++) { Assert.assertEquals(k * 100 + i, rowIds[i]); }
+		}
+		
+		// Lookalikes that were not inserted
+		Assert.assertFalse(index.contains(new byte[] { (byte) 0x81 }));
+		Assert.assertFalse(index.contains(new byte[] { (byte) 0xfe }));
+		Assert.assertFalse(index.contains(new byte[] { 0x10, (byte) 0xfe, 0x10 }));
+		Assert.assertFalse(index.contains(new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff }));
+		Assert.assertFalse(index.contains(new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x00 }));
+		Assert.assertFalse(index.contains(new byte[0]));
+	}
+	
+	@Test
+	public void testConcurrentReads() throws InterruptedException {
+		CiphertextHashIndex index = new CiphertextHashIndex(1);
+		AtomicInteger inserted = new AtomicInteger();
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		
+		// Readers check that every published row can be found
+		Thread[] readers = new Thread[4];
+		for (int r = 0; r < readers.length; r++) {
+			readers[r] = new Thread(() -> {
+				try {
+					while (!done.get()) {
+						int row = inserted.get() - 1;
+						if (row < 0) { continue; }
+						
+						long[] rowIds = index.get(ciphertexts[row]);
+						Assert.assertArrayEquals(new long[] { row }, rowIds);
+					}
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			});
+			readers[r].start();
+		}
+		
+		for (int row = 0; row < DISTINCT_VALUES; row++) {
+			index.put(ciphertexts[row], row);
+			inserted.set(row + 1);
+		}
+		
+		done.set(true);
+		for (Thread reader : readers) { reader.join(); }
+		
+		Assert.assertNull(failure.get());
+	}
+}
@@ -0,0 +1,163 @@
+package ope.join;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ope.Key;
+import ope.OpeException;
+import ope.fast.FastOpeCipher;
+import ope.mope.MopeCipher;
+import ope.sort.Entry;
+import ope.util.Encoder;
+
+/**
+ * @author Ayman Madkour
+ */
+public class CiphertextJoinTest {
+	
+	private final Random random = new Random(1);
+	
+	@Test
+	public void testEquiJoin() {
+		Key key = new FastOpeCipher().generateKey();
+		int[] left = randomValues(2000, 300);
+		int[] right = randomValues(1000, 300);
+		
+		// Expected pairs of row numbers
+		Set<String> expected = new HashSet<>();
+		for (int l = 0; l < left.length; l++) {
+			for (int r = 0; r < right.length; r++) {
+				if (left[l] == right[r]) { expected.add(l + ":" + r); }
+			}
+		}
+		
+		for (int partitions : new int[] { 1, 8 }) {
+			CiphertextJoin join = new CiphertextJoin();
+			join.setPartitions(partitions);
+			
+			Set<String> actual = Collections.synchronizedSet(new HashSet<>());
+			join.equiJoin(entries(key, left), entries(key, right), (l, r) ->
+					Assert.assertTrue(actual.add(row(l) + ":" + row(r))));
+			
+			Assert.assertEquals(expected, actual);
+		}
+	}
+	
+	@Test
+	public void testBandJoin() {
+		Assert.assertEquals(0, assertBandJoin(new FastOpeCipher().generateKey(), false));
+	}
+	
+	@Test
+	public void testModularBandJoin() {
+		// Repeat with different offsets, so that some bands wrap around
+		int wrapped = 0;
+		for (int i = 0; i < 5; i++) {
+			wrapped += assertBandJoin(new MopeCipher(new FastOpeCipher(), 4).generateKey(), true);
+		}
+		Assert.assertTrue(wrapped > 0);
+	}
+	
+	@Test
+	public void testWrappedBand() {
+		Key key = new FastOpeCipher().generateKey();
+		int[] points = randomValues(500, 1000);
+		
+		// Matches values from 900 up, and values up to 100
+		Band band = Band.modular(key.encryptInt(900), key.encryptInt(100), new byte[0]);
+		Assert.assertTrue(band.isWrapped());
+		Assert.assertFalse(Band.modular(key.encryptInt(100), key.encryptInt(900), new byte[0]).isWrapped());
+		
+		List<Entry> entries = new ArrayList<>();
+		for (int i = 0; i < points.length; i++) { entries.add(new Entry(key.encryptInt(points[i]), Encoder.encodeInt(i))); }
+		
+		Set<Integer> expected = new HashSet<>();
+		for (int i = 0; i < points.length; i++) {
+			if (points[i] >= 900 || points[i] <= 100) { expected.add(i); }
+		}
+		
+		CiphertextJoin join = new CiphertextJoin();
+		join.setPartitions(8);
+		Set<Integer> actual = Collections.synchronizedSet(new HashSet<>());
+		join.bandJoin(entries, Collections.singletonList(band), (p, b) -> Assert.assertTrue(actual.add(row(p))));
+		
+		Assert.assertEquals(expected, actual);
+	}
+	
+	@Test(expected = OpeException.class)
+	public void testReversedBand() {
+		Key key = new FastOpeCipher().generateKey();
+		new Band(key.encryptInt(10), key.encryptInt(5), new byte[0]);
+	}
+	
+	/**
+	 * Joins random points with random bands, and returns the number of bands
+	 * that wrapped around.
+	 */
+	private int assertBandJoin(Key key, boolean modular) {
+		int[] points = randomValues(2000, 1000);
+		int[][] ranges = new int[200][];
+		for (int b = 0; b < ranges.length; b++) {
+			int lower = random.nextInt(1100) - 50;
+			ranges[b] = new int[] { lower, lower + random.nextInt(100) };
+		}
+		
+		Set<String> expected = new HashSet<>();
+		for (int p = 0; p < points.length; p++) {
+			for (int b = 0; b < ranges.length; b++) {
+				if (points[p] >= ranges[b][0] && points[p] <= ranges[b][1]) { expected.add(p + ":" + b); }
+			}
+		}
+		
+		List<Band> bands = new ArrayList<>();
+		int wrapped = 0;
+		for (int b = 0; b < ranges.length; b++) {
+			byte[] lower = encrypt(key, ranges[b][0]);
+			byte[] upper = encrypt(key, ranges[b][1]);
+			Band band = modular ? Band.modular(lower, upper, Encoder.encodeInt(b)) : new Band(lower, upper, Encoder.encodeInt(b));
+			bands.add(band);
+			if (band.isWrapped()) { wrapped++; }
+		}
+		
+		CiphertextJoin join = new CiphertextJoin();
+		join.setPartitions(8);
+		
+		Set<String> actual = Collections.synchronizedSet(new HashSet<>());
+		join.bandJoin(entries(key, points), bands, (p, b) ->
+				Assert.assertTrue(actual.add(row(p) + ":" + Encoder.decodeInt(b.getPayload()))));
+		
+		Assert.assertEquals(expected, actual);
+		return wrapped;
+	}
+	
+	private int[] randomValues(int count, int bound) {
+		int[] values = new int[count];
+		for (int i = 0; i < count; i++) { values[i] = random.nextInt(bound); }
+		return values;
+	}
+	
+	private static List<Entry> entries(Key key, int[] values) {
+		List<Entry> entries = new ArrayList<>();
+		for (int i = 0; i < values.length; i++) { entries.add(new Entry(encrypt(key, values[i]), Encoder.encodeInt(i))); }
+		return entries;
+	}
+	
+	/**
+	 * Spreads test values over the whole int range, so that MOPE offsets make
+	 * some bands wrap around.
+	 */
+	private static byte[] encrypt(Key key, int value) {
+		return key.encryptInt((int) ((value + 100) * 3_000_000L + Integer.MIN_VALUE));
+	}
+	
+	private static int row(Entry entry) {
+		return Encoder.decodeInt(entry.getPayload());
+	}
+}
@@ -0,0 +1,40 @@
+package ope.mope;
+
+import ope.AllocationTest;
+import ope.Cipher;
+import ope.fast.FastOpeCipher;
+
+/**
+ * @author Ayman Madkour
+ */
+public class MopeAllocationTest extends AllocationTest {
+	@Override
+	protected Cipher createCipher() {
+		return new MopeCipher(new FastOpeCipher(), 2);
+	}
+
+	@Override
+	protected long getEncryptBudget() {
+		return 24_000;
+	}
+
+	@Override
+	protected long getDecryptBudget() {
+		return 80_000;
+	}
+
+	@Override
+	protected long getEncryptStringBudget() {
+		return 24_000;
+	}
+
+	@Override
+	protected long getDecryptStringBudget() {
+		return 80_000;
+	}
+
+	@Override
+	protected String getPlaintextString() {
+		return "op";
+	}
+}
@@ -0,0 +1,135 @@
+package ope.partition;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ope.Cipher;
+import ope.Key;
+import ope.OpeException;
+import ope.fast.FastOpeCipher;
+import ope.mope.MopeCipher;
+
+/**
+ * @author Ayman Madkour
+ */
+public class PartitionTest {
+	
+	private static final int VALUES = 20000;
+	private static final int PARTITIONS = 8;
+	
+	@Test
+	public void testFastOpePartitioning() {
+		testPartitioning(new FastOpeCipher());
+	}
+	
+	@Test
+	public void testMopePartitioning() {
+		testPartitioning(new MopeCipher(new FastOpeCipher(), 2));
+	}
+	
+	@Test
+	public void testRouting() {
+		RangePartitioner partitioner = new RangePartitioner(new byte[][] {
+			{ 0x10 },
+			{ 0x20 },
+			{ (byte) 0x80 }
+		});
+		
+		Assert.assertEquals(4, partitioner.getPartitionCount());
+		Assert.assertEquals(0, partitioner.partition(new byte[] { 0x00 }));
+		Assert.assertEquals(1, partitioner.partition(new byte[] { 0x10 }));
+		Assert.assertEquals(1, partitioner.partition(new byte[] { 0x1f }));
+		Assert.assertEquals(2, partitioner.partition(new byte[] { 0x20 }));
+		Assert.assertEquals(3, partitioner.partition(new byte[] { (byte) 0xff }));
+	}
+	
+	@Test
+	public void testMergeSelf() {
+		CiphertextSketch sketch = new CiphertextSketch(16, new Random(1));
+		for (int i = 0; i < 100; i++) { sketch.add(new byte[] { (byte) i }); }
+		byte[] encoded = sketch.encode();
+		
+		sketch.merge(sketch);
+		Assert.assertEquals(100, sketch.getCount());
+		Assert.assertArrayEquals(encoded, sketch.encode());
+	}
+	
+	@Test
+	public void testDecodeMalformed() {
+		CiphertextSketch sketch = new CiphertextSketch(16, new Random(1));
+		for (int i = 0; i < 100; i++) { sketch.add(new byte[] { (byte) i, 1, 2 }); }
+		byte[] encoded = sketch.encode();
+		Assert.assertEquals(16, CiphertextSketch.decode(encoded).getSampleSize());
+		
+		byte[][] malformed = new byte[][] {
+			// Truncated
+			Arrays.copyOf(encoded, 10),
+			Arrays.copyOf(encoded, encoded.length - 1),
+			// Trailing bytes
+			Arrays.copyOf(encoded, encoded.length + 1),
+			// Huge or negative capacity
+			patch(encoded, 0, Integer.MAX_VALUE),
+			patch(encoded, 0, -1),
+			// Sample size beyond capacity or remaining bytes
+			patch(encoded, 12, 17),
+			patch(encoded, 12, Integer.MAX_VALUE),
+			patch(patch(encoded, 0, 1 << 24), 12, 1 << 24),
+			// Ciphertext length beyond remaining bytes, or negative
+			patch(encoded, 24, Integer.MAX_VALUE),
+			patch(encoded, 24, -1)
+		};
+		
+		for (byte[] bytes : malformed) {
+			try {
+				CiphertextSketch.decode(bytes);
+				Assert.fail();
+				
+			} catch (OpeException e) {
+				// Expected
+			}
+		}
+	}
+	
+	private static byte[] patch(byte[] bytes, int index, int value) {
+		byte[] patched = bytes.clone();
+		ByteBuffer.wrap(patched).putInt(index, value);
+		return patched;
+	}
+	
+	private void testPartitioning(Cipher cipher) {
+		Key key = cipher.generateKey();
+		Random random = new Random(1);
+		
+		// Build two sketches over skewed data, as if on two nodes
+		byte[][] ciphertexts = new byte[VALUES][];
+		CiphertextSketch sketch1 = new CiphertextSketch(1024, new Random(2));
+		CiphertextSketch sketch2 = new CiphertextSketch(1024, new Random(3));
+		
+		for (int i = 0; i < VALUES; i++) {
+			short plaintext = (short) (Math.abs(random.nextGaussian()) * 3000);
+			ciphertexts[i] = key.encryptShort(plaintext);
+			((i % 2 == 0) ? sketch1 : sketch2).add(ciphertexts[i]);
+		}
+		
+		// Merge sketches, after sending one of them over the wire
+		sketch1.merge(CiphertextSketch.decode(sketch2.encode()));
+		Assert.assertEquals(VALUES, sketch1.getCount());
+		Assert.assertEquals(1024, sketch1.getSampleSize());
+		
+		// Route ciphertexts to partitions
+		RangePartitioner partitioner = new RangePartitioner(sketch1, PARTITIONS);
+		Assert.assertEquals(PARTITIONS, partitioner.getPartitionCount());
+		
+		int[] sizes = new int[PARTITIONS];
+		for (byte[] ciphertext : ciphertexts) { sizes[partitioner.partition(ciphertext)]++; }
+		
+		// Validate balance
+		for (int size : sizes) {
+			Assert.assertEquals((double) VALUES / PARTITIONS, size, 0.05 * VALUES);
+		}
+	}
+}
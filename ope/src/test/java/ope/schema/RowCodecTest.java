@@ -0,0 +1,122 @@
+package ope.schema;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ope.Cipher;
+import ope.Key;
+import ope.OpeException;
+import ope.fast.FastOpeCipher;
+
+/**
+ * @author Ayman Madkour
+ */
+public class RowCodecTest {
+	
+	@Test
+	public void testRoundTrip() {
+		Cipher cipher = new FastOpeCipher();
+		Key intKey = cipher.generateKey();
+		Key longKey = OpeSchema.createMopeCipher(cipher, ColumnType.LONG).generateKey();
+		Key shortKey = OpeSchema.createMopeCipher(cipher, ColumnType.SHORT).generateKey();
+		Key doubleKey = cipher.generateKey();
+		Key stringKey = cipher.generateKey();
+		Key booleanKey = OpeSchema.createMopeCipher(cipher, ColumnType.BOOLEAN).generateKey();
+		
+		OpeSchema schema = new OpeSchema();
+		schema.addColumn("id", ColumnType.INT, intKey);
+		schema.addColumn("amount", ColumnType.LONG, longKey);
+		schema.addColumn("code", ColumnType.SHORT, shortKey);
+		schema.addColumn("price", ColumnType.DOUBLE, doubleKey);
+		schema.addColumn("name", ColumnType.STRING, stringKey);
+		schema.addColumn("active", ColumnType.BOOLEAN, booleanKey);
+		
+		RowCodec codec = schema.compile();
+		
+		Object[][] rows = new Object[][] {
+			{ 1, 1234567890123L, (short) -5, 19.99, "order-preserving", true },
+			{ -7, Long.MIN_VALUE, Short.MAX_VALUE, -0.5, "", false },
+			{ 42, 0L, (short) 0, 0.0, null, true }
+		};
+		
+		for (Object[] values : rows) {
+			byte[] row = codec.encrypt(values);
+			Assert.assertArrayEquals(values, codec.decrypt(row));
+			
+			// Columns are the same ciphertexts as produced by the keys
+			Assert.assertArrayEquals(intKey.encryptInt((Integer) values[0]), codec.getCiphertext(row, 0));
+			Assert.assertArrayEquals(longKey.encryptLong((Long) values[1]), codec.getCiphertext(row, 1));
+			Assert.assertEquals(values[4], codec.decrypt(row, schema.indexOf("name")));
+		}
+	}
+	
+	@Test
+	public void testEncryptIntoBuffer() {
+		Cipher cipher = new FastOpeCipher();
+		Key intKey = cipher.generateKey();
+		Key stringKey = cipher.generateKey();
+		
+		OpeSchema schema = new OpeSchema();
+		schema.addColumn("id", ColumnType.INT, intKey);
+		schema.addColumn("name", ColumnType.STRING, stringKey);
+		RowCodec codec = schema.compile();
+		
+		Object[][] rows = new Object[][] {
+			{ 1, "first" },
+			{ null, "second row" },
+			{ -3, null }
+		};
+		
+		// Rows are appended one after the other, matching the array form
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+		buffer.position(7);
+		int[] starts = new int[rows.length];
+		for (int i = 0; i < rows.length; i++) {
+			starts[i] = buffer.position();
+			codec.encrypt(buffer, rows[i]);
+		}
+		
+		for (int i = 0; i < rows.length; i++) {
+			byte[] expected = codec.encrypt(rows[i]);
+			buffer.position(starts[i]);
+			
+			Assert.assertEquals(expected.length, codec.getRowLength(buffer));
+			Assert.assertArrayEquals(rows[i], codec.decrypt(buffer));
+			Assert.assertEquals(starts[i], buffer.position());
+			for (int column = 0; column < rows[i].length; column++) {
+				Assert.assertArrayEquals(codec.getCiphertext(expected, column), codec.getCiphertext(buffer, column));
+				Assert.assertEquals(codec.getOffset(expected, column) + starts[i], codec.getOffset(buffer, column));
+			}
+		}
+	}
+	
+	@Test
+	public void testEncryptIntoSmallBuffer() {
+		Cipher cipher = new FastOpeCipher();
+		OpeSchema schema = new OpeSchema();
+		schema.addColumn("id", ColumnType.LONG, cipher.generateKey());
+		schema.addColumn("name", ColumnType.STRING, cipher.generateKey());
+		RowCodec codec = schema.compile();
+		
+		byte[] row = codec.encrypt(5L, "name");
+		for (int capacity : new int[] { 0, 4, 8, row.length - 1 }) {
+			ByteBuffer buffer = ByteBuffer.allocate(capacity);
+			try {
+				codec.encrypt(buffer, 5L, "name");
+				Assert.fail();
+				
+			} catch (OpeException e) {
+				Assert.assertEquals(0, buffer.position());
+			}
+		}
+	}
+	
+	@Test(expected = OpeException.class)
+	public void testMopeWidthMismatch() {
+		Cipher cipher = new FastOpeCipher();
+		OpeSchema schema = new OpeSchema();
+		schema.addColumn("code", ColumnType.SHORT, OpeSchema.createMopeCipher(cipher, ColumnType.LONG).generateKey());
+	}
+}
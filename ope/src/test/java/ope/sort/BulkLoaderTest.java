@@ -0,0 +1,168 @@
+package ope.sort;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ope.Key;
+import ope.fast.FastOpeCipher;
+import ope.util.Encoder;
+
+/**
+ * @author Ayman Madkour
+ */
+public class BulkLoaderTest {
+	
+	private static final int RECORDS = 5000;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private Key key;
+	
+	@Before
+	public void setUp() {
+		key = new FastOpeCipher().generateKey();
+	}
+	
+	@Test
+	public void testSortInMemory() {
+		assertSorted(new BulkLoader(key), 0);
+	}
+	
+	@Test
+	public void testSortWithRuns() {
+		BulkLoader loader = new BulkLoader(key);
+		loader.setRunBytes(16 * 1024);
+		assertSorted(loader, 10);
+	}
+	
+	@Test
+	public void testSortWithMultipleMergePasses() {
+		BulkLoader loader = new BulkLoader(key);
+		loader.setRunBytes(4 * 1024);
+		loader.setMaxFanIn(3);
+		
+		// Payloads larger than the I/O buffer are written directly
+		loader.setBufferSize(64);
+		assertSorted(loader, 50);
+	}
+	
+	@Test
+	public void testMinimumBufferSize() {
+		BulkLoader loader = new BulkLoader(key);
+		loader.setRunBytes(16 * 1024);
+		
+		// Buffer that only holds a record header
+		loader.setBufferSize(8);
+		assertSorted(loader, 10);
+	}
+	
+	@Test
+	public void testInvalidBufferSize() {
+		try (BulkLoader loader = new BulkLoader(key)) {
+			for (int bufferSize : new int[] { Integer.MIN_VALUE, -1, 0, 7 }) {
+				try {
+					loader.setBufferSize(bufferSize);
+					Assert.fail();
+					
+				} catch (IllegalArgumentException e) {
+					Assert.assertNotEquals(bufferSize, loader.getBufferSize());
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testRunSizeIncludesCiphertexts() {
+		int runBytes = 64 * 1024;
+		int ciphertextLength = key.getCiphertextLength(100);
+		
+		try (BulkLoader loader = new BulkLoader(key)) {
+			loader.setTempDirectory(folder.getRoot().toPath());
+			loader.setRunBytes(runBytes);
+			for (int i = 0; i < 1000; i++) { loader.add(new byte[100], new byte[0]); }
+			
+			// Spilled at least as often as plaintexts and ciphertexts fill runs
+			Assert.assertTrue(loader.getRunCount() >= 1000 * (100 + ciphertextLength) / runBytes);
+		}
+	}
+	
+	@Test
+	public void testLoserTree() {
+		Random random = new Random(1);
+		
+		for (int k = 0; k <= 9; k++) {
+			List<Integer> expected = new ArrayList<>();
+			List<Iterator<Integer>> sources = new ArrayList<>();
+			
+			// Include empty sources
+			for (int i = 0; i < k; i++) {
+				List<Integer> source = new ArrayList<>();
+				for (int j = random.nextInt(20) - 5; j > 0; j--) { source.add(random.nextInt(50)); }
+				source.sort(null);
+				expected.addAll(source);
+				sources.add(source.iterator());
+			}
+			
+			List<Integer> merged = new ArrayList<>();
+			new LoserTree<>(sources, Comparator.<Integer>naturalOrder()).forEachRemaining(merged::add);
+			
+			expected.sort(null);
+			Assert.assertEquals(expected, merged);
+		}
+	}
+	
+	private void assertSorted(BulkLoader loader, int minimumRuns) {
+		loader.setTempDirectory(folder.getRoot().toPath());
+		Random random = new Random(2);
+		
+		// Few distinct values, so stability can be checked
+		int[] values = new int[RECORDS];
+		try (BulkLoader l = loader) {
+			for (int i = 0; i < RECORDS; i++) {
+				values[i] = random.nextInt(500) - 250;
+				byte[] payload = Arrays.copyOf(Encoder.encodeInt(i), 4 + random.nextInt(100));
+				l.add(Encoder.encodeInt(values[i]), payload);
+			}
+			
+			Assert.assertTrue(l.getRunCount() >= minimumRuns);
+			
+			List<Entry> entries;
+			try (MergeIterator iterator = l.sort()) {
+				entries = iterator.stream().collect(Collectors.toList());
+			}
+			
+			Assert.assertEquals(RECORDS, entries.size());
+			
+			int previousValue = Integer.MIN_VALUE;
+			int previousRecord = -1;
+			for (Entry entry : entries) {
+				int value = key.decryptInt(entry.getCiphertext());
+				int record = Encoder.decodeInt(Arrays.copyOf(entry.getPayload(), 4));
+				
+				Assert.assertEquals(values[record], value);
+				Assert.assertTrue(value >= previousValue);
+				if (value == previousValue) { Assert.assertTrue(record > previousRecord); }
+				
+				previousValue = value;
+				previousRecord = record;
+			}
+		}
+		
+		// Temporary files are deleted
+		File[] files = folder.getRoot().listFiles();
+		Assert.assertEquals(0, files.length);
+	}
+}
@@ -0,0 +1,48 @@
+package ope.util;
+
+import org.junit.Test;
+
+import ope.AllocationMeter;
+
+/**
+ * Allocation regression tests for the OPE-friendly encodings.
+ * 
+ * @author Ayman Madkour
+ */
+public class EncoderAllocationTest {
+	
+	private static final long NUMBER_ENCODE_BUDGET = 1024;
+	private static final long NUMBER_DECODE_BUDGET = 512;
+	private static final long STRING_BUDGET = 128;
+	
+	// Keeps results reachable so that operations are not optimized away
+	private volatile Object sink;
+	
+	@Test
+	public void testIntAllocation() {
+		byte[] encoded = Encoder.encodeInt(-12345);
+		AllocationMeter.assertAllocation("Encoder.encodeInt", NUMBER_ENCODE_BUDGET, () -> sink = Encoder.encodeInt(-12345));
+		AllocationMeter.assertAllocation("Encoder.decodeInt", NUMBER_DECODE_BUDGET, () -> sink = Encoder.decodeInt(encoded));
+	}
+	
+	@Test
+	public void testLongAllocation() {
+		byte[] encoded = Encoder.encodeLong(-1234567890123L);
+		AllocationMeter.assertAllocation("Encoder.encodeLong", NUMBER_ENCODE_BUDGET, () -> sink = Encoder.encodeLong(-1234567890123L));
+		AllocationMeter.assertAllocation("Encoder.decodeLong", NUMBER_DECODE_BUDGET, () -> sink = Encoder.decodeLong(encoded));
+	}
+	
+	@Test
+	public void testDoubleAllocation() {
+		byte[] encoded = Encoder.encodeDouble(-1234.5678);
+		AllocationMeter.assertAllocation("Encoder.encodeDouble", NUMBER_ENCODE_BUDGET, () -> sink = Encoder.encodeDouble(-1234.5678));
+		AllocationMeter.assertAllocation("Encoder.decodeDouble", NUMBER_DECODE_BUDGET, () -> sink = Encoder.decodeDouble(encoded));
+	}
+	
+	@Test
+	public void testStringAllocation() {
+		byte[] encoded = Encoder.encodeString("order-preserving");
+		AllocationMeter.assertAllocation("Encoder.encodeString", STRING_BUDGET, () -> sink = Encoder.encodeString("order-preserving"));
+		AllocationMeter.assertAllocation("Encoder.decodeString", STRING_BUDGET, () -> sink = Encoder.decodeString(encoded));
+	}
+}
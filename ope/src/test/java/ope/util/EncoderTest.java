@@ -0,0 +1,178 @@
+package ope.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Function;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ope.Key;
+import ope.OpeException;
+import ope.fast.FastOpeCipher;
+import ope.mope.MopeCipher;
+
+/**
+ * @author Ayman Madkour
+ */
+public class EncoderTest {
+	
+	private final Random random = new Random(1);
+	
+	@Test
+	public void testFloat() {
+		List<Float> values = new ArrayList<>(Arrays.asList(
+				-0.0f, 0.0f, -0.5f, 0.5f, -1.0f, 1.0f,
+				Float.MIN_VALUE, -Float.MIN_VALUE, 2 * Float.MIN_VALUE, -2 * Float.MIN_VALUE,
+				Float.MIN_NORMAL, -Float.MIN_NORMAL, Math.nextDown(Float.MIN_NORMAL), -Math.nextDown(Float.MIN_NORMAL),
+				Float.MAX_VALUE, -Float.MAX_VALUE, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NaN));
+		for (int i = 0; i < 500; i++) { values.add(Float.intBitsToFloat(random.nextInt())); }
+		
+		assertOrdered(values, Float::compare, Encoder::encodeFloat, Encoder::decodeFloat);
+		
+		// Bit-exact round trip, including the sign of zero
+		for (float value : values) {
+			Assert.assertEquals(Float.floatToIntBits(value), Float.floatToIntBits(Encoder.decodeFloat(Encoder.encodeFloat(value))));
+		}
+	}
+	
+	@Test
+	public void testDouble() {
+		List<Double> values = new ArrayList<>(Arrays.asList(
+				-0.0, 0.0, -0.5, 0.5, -1.0, 1.0,
+				Double.MIN_VALUE, -Double.MIN_VALUE, 2 * Double.MIN_VALUE, -2 * Double.MIN_VALUE,
+				Double.MIN_NORMAL, -Double.MIN_NORMAL, Math.nextDown(Double.MIN_NORMAL), -Math.nextDown(Double.MIN_NORMAL),
+				Double.MAX_VALUE, -Double.MAX_VALUE, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NaN));
+		for (int i = 0; i < 500; i++) { values.add(Double.longBitsToDouble(random.nextLong())); }
+		
+		assertOrdered(values, Double::compare, Encoder::encodeDouble, Encoder::decodeDouble);
+		
+		// Bit-exact round trip, including the sign of zero
+		for (double value : values) {
+			Assert.assertEquals(Double.doubleToLongBits(value), Double.doubleToLongBits(Encoder.decodeDouble(Encoder.encodeDouble(value))));
+		}
+	}
+	
+	@Test
+	public void testBigInteger() {
+		List<BigInteger> values = new ArrayList<>();
+		for (String value : new String[] { "0", "1", "-1", "127", "128", "255", "256", "-255", "-256", "65536" }) {
+			values.add(new BigInteger(value));
+		}
+		
+		// Magnitudes around the extended length header
+		values.add(BigInteger.ONE.shiftLeft(126 * 8 - 1));
+		values.add(BigInteger.ONE.shiftLeft(126 * 8));
+		values.add(BigInteger.ONE.shiftLeft(300 * 8).negate());
+		values.add(BigInteger.ONE.shiftLeft(126 * 8).negate());
+		for (int i = 0; i < 500; i++) { values.add(new BigInteger(random.nextInt(200), random).multiply(BigInteger.valueOf(random.nextInt(3) - 1))); }
+		
+		assertOrdered(values, Comparator.naturalOrder(), Encoder::encodeBigInteger, Encoder::decodeBigInteger);
+		Assert.assertEquals(3, Encoder.encodeBigInteger(BigInteger.valueOf(1000)).length);
+	}
+	
+	@Test
+	public void testBigDecimal() {
+		List<BigDecimal> values = new ArrayList<>();
+		for (String value : new String[] {
+				"0", "1", "-1", "0.1", "0.101", "-0.1", "-0.101", "10", "100", "99.99", "123.45", "-123.45",
+				"1E+200", "1E-200", "-1E+200", "-1E-200", "1E+2147483647", "1E-2147483647", "12345678901234567890.0987654321" }) {
+			values.add(new BigDecimal(value));
+		}
+		for (int i = 0; i < 500; i++) {
+			BigInteger unscaled = new BigInteger(random.nextInt(100), random).multiply(BigInteger.valueOf(random.nextInt(3) - 1));
+			values.add(new BigDecimal(unscaled, random.nextInt(60) - 30));
+		}
+		
+		assertOrdered(values, Comparator.naturalOrder(), Encoder::encodeBigDecimal, Encoder::decodeBigDecimal);
+		
+		// Equal values share an encoding
+		Assert.assertArrayEquals(Encoder.encodeBigDecimal(new BigDecimal("1.5")), Encoder.encodeBigDecimal(new BigDecimal("1.500")));
+		Assert.assertEquals(5, Encoder.encodeBigDecimal(new BigDecimal("123.45")).length);
+	}
+	
+	@Test
+	public void testTemporal() {
+		List<Instant> instants = new ArrayList<>(Arrays.asList(Instant.MIN, Instant.MAX, Instant.EPOCH, Instant.ofEpochSecond(-1, 999_999_999)));
+		List<LocalDate> dates = new ArrayList<>(Arrays.asList(LocalDate.MIN, LocalDate.MAX, LocalDate.ofEpochDay(0), LocalDate.ofEpochDay(-1)));
+		List<LocalDateTime> dateTimes = new ArrayList<>(Arrays.asList(LocalDateTime.MIN, LocalDateTime.MAX));
+		
+		for (int i = 0; i < 500; i++) {
+			Instant instant = Instant.ofEpochSecond(random.nextLong() % 100_000_000_000L, random.nextInt(1_000_000_000));
+			instants.add(instant);
+			dates.add(LocalDate.ofEpochDay(random.nextInt()));
+			dateTimes.add(LocalDateTime.ofEpochSecond(instant.getEpochSecond(), instant.getNano(), ZoneOffset.UTC));
+		}
+		
+		assertOrdered(instants, Comparator.naturalOrder(), Encoder::encodeInstant, Encoder::decodeInstant);
+		assertOrdered(dates, Comparator.naturalOrder(), Encoder::encodeLocalDate, Encoder::decodeLocalDate);
+		assertOrdered(dateTimes, Comparator.naturalOrder(), Encoder::encodeLocalDateTime, Encoder::decodeLocalDateTime);
+	}
+	
+	@Test
+	public void testUUID() {
+		List<UUID> values = new ArrayList<>(Arrays.asList(new UUID(0, 0), new UUID(-1, -1), new UUID(Long.MIN_VALUE, 0)));
+		for (int i = 0; i < 500; i++) { values.add(UUID.randomUUID()); }
+		
+		// Unsigned order
+		Comparator<UUID> unsigned = Comparator.<UUID>comparingLong(u -> u.getMostSignificantBits() ^ Long.MIN_VALUE)
+				.thenComparingLong(u -> u.getLeastSignificantBits() ^ Long.MIN_VALUE);
+		assertOrdered(values, unsigned, Encoder::encodeUUID, Encoder::decodeUUID);
+	}
+	
+	@Test
+	public void testKeys() {
+		Key key = new FastOpeCipher().generateKey();
+		BigDecimal price = new BigDecimal("-1234.5678");
+		Assert.assertEquals(price, key.decryptBigDecimal(key.encryptBigDecimal(price)));
+		Assert.assertTrue(CiphertextComparator.INSTANCE.compare(key.encryptBigDecimal(price), key.encryptBigDecimal(price.negate())) < 0);
+		
+		BigInteger count = BigInteger.TEN.pow(30);
+		Assert.assertEquals(count, key.decryptBigInteger(key.encryptBigInteger(count)));
+		
+		// Fixed-size types can be encrypted with MOPE
+		LocalDate date = LocalDate.of(2024, 2, 29);
+		Key dateKey = new MopeCipher(new FastOpeCipher(), Encoder.LOCAL_DATE_SIZE).generateKey();
+		Assert.assertEquals(date, dateKey.decryptLocalDate(dateKey.encryptLocalDate(date)));
+		
+		Instant instant = Instant.ofEpochSecond(1_700_000_000L, 123_456_789);
+		Key instantKey = new MopeCipher(new FastOpeCipher(), Encoder.INSTANT_SIZE).generateKey();
+		Assert.assertEquals(instant, instantKey.decryptInstant(instantKey.encryptInstant(instant)));
+		
+		UUID uuid = UUID.randomUUID();
+		Assert.assertEquals(uuid, key.decryptUUID(key.encryptUUID(uuid)));
+		
+		LocalDateTime dateTime = LocalDateTime.of(2024, 2, 29, 23, 59, 59, 999);
+		Assert.assertEquals(dateTime, key.decryptLocalDateTime(key.encryptLocalDateTime(dateTime)));
+	}
+	
+	@Test(expected = OpeException.class)
+	public void testInvalidBigDecimal() {
+		Encoder.decodeBigDecimal(new byte[] { (byte) 0xff, 0x7f, (byte) 0xfe });
+	}
+	
+	private static <T> void assertOrdered(List<T> values, Comparator<T> comparator, Function<T, byte[]> encoder, Function<byte[], T> decoder) {
+		for (T value : values) {
+			Assert.assertEquals(0, comparator.compare(value, decoder.apply(encoder.apply(value))));
+		}
+		
+		for (T v1 : values) {
+			byte[] e1 = encoder.apply(v1);
+			for (int i = 0; i < 50; i++) {
+				T v2 = values.get(i);
+				int expected = Integer.signum(comparator.compare(v1, v2));
+				Assert.assertEquals(v1 + " / " + v2, expected, Integer.signum(CiphertextComparator.INSTANCE.compare(e1, encoder.apply(v2))));
+			}
+		}
+	}
+}
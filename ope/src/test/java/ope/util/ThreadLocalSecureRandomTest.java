@@ -0,0 +1,34 @@
+package ope.util;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Ayman Madkour
+ */
+public class ThreadLocalSecureRandomTest {
+
+	@Test
+	public void testOneInstancePerThread() throws InterruptedException {
+		SecureRandom random = ThreadLocalSecureRandom.current();
+		Assert.assertSame(random, ThreadLocalSecureRandom.current());
+
+		AtomicReference<SecureRandom> other = new AtomicReference<>();
+		Thread thread = new Thread(() -> other.set(ThreadLocalSecureRandom.current()));
+		thread.start();
+		thread.join();
+
+		Assert.assertNotNull(other.get());
+		Assert.assertNotSame(random, other.get());
+	}
+
+	@Test
+	public void testDrbg() {
+		// DRBG is available from JDK 9
+		if (System.getProperty("java.specification.version").startsWith("1.")) { return; }
+		Assert.assertEquals("DRBG", ThreadLocalSecureRandom.current().getAlgorithm());
+	}
+}